@@ -0,0 +1,164 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import com.google.android.apps.muzei.api.Artwork;
+import com.tasomaniac.muzei.tvshows.data.ArtworkQueue;
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
+import com.tasomaniac.muzei.tvshows.data.PosterCache;
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+import com.tasomaniac.muzei.tvshows.data.SyntheticLibrary;
+import com.tasomaniac.muzei.tvshows.data.SyntheticSeriesGuideProvider;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+import com.tasomaniac.muzei.tvshows.data.prefs.PreferenceSnapshot;
+import com.tasomaniac.muzei.tvshows.util.Benchmark;
+import com.tasomaniac.muzei.tvshows.util.PerformanceTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures what {@code onTryUpdate} does when the artwork queue is empty, against synthetic
+ * libraries of 100, 1k and 10k episodes: an incremental index sync (provider queries and cursor
+ * walks), loading and selecting candidates, byline formatting with {@code TimeTools} and building
+ * the {@link Artwork}s.
+ *
+ * <p> Results are checked against the baseline recorded on the device, or the defaults below
+ * without one, see {@link Benchmark.Result#assertNoRegression}.
+ */
+@PerformanceTest
+public class ArtSourcePipelineBenchmark extends AndroidTestCase {
+
+    private static final int WARMUPS = 5;
+    private static final int RUNS = 50;
+
+    /**
+     * Artworks built per rotation, the size of the art source queue.
+     */
+    private static final int ARTWORKS_PER_ROTATION = 10;
+
+    /**
+     * Episodes edited in SeriesGuide between two rotations.
+     */
+    private static final int EDITS_PER_ROTATION = 20;
+
+    private static final double DEFAULT_MAX_P99_MILLIS_100 = 150;
+    private static final double DEFAULT_MAX_P99_MILLIS_1K = 200;
+    private static final double DEFAULT_MAX_P99_MILLIS_10K = 400;
+    private static final long DEFAULT_MAX_ALLOCATIONS_PER_ROTATION = 30000;
+
+    private static final double DEFAULT_MAX_FULL_SYNC_MILLIS_10K = 3000;
+
+    private ExecutorService executor;
+    private File historyFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(3);
+        historyFile = new File(getContext().getCacheDir(), "benchmark_rotation_history");
+        //noinspection ResultOfMethodCallIgnored
+        historyFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        //noinspection ResultOfMethodCallIgnored
+        historyFile.delete();
+        super.tearDown();
+    }
+
+    public void testRotation100Episodes() throws Exception {
+        measureRotation(100).assertNoRegression(DEFAULT_MAX_P99_MILLIS_100,
+                DEFAULT_MAX_ALLOCATIONS_PER_ROTATION);
+    }
+
+    public void testRotation1kEpisodes() throws Exception {
+        measureRotation(1000).assertNoRegression(DEFAULT_MAX_P99_MILLIS_1K,
+                DEFAULT_MAX_ALLOCATIONS_PER_ROTATION);
+    }
+
+    public void testRotation10kEpisodes() throws Exception {
+        measureRotation(10000).assertNoRegression(DEFAULT_MAX_P99_MILLIS_10K,
+                DEFAULT_MAX_ALLOCATIONS_PER_ROTATION);
+    }
+
+    public void testFullSync10kEpisodes() throws Exception {
+        final SyntheticSeriesGuideProvider provider = newProvider(10000);
+        Benchmark.measure("full sync 10k", 1, 5, new Benchmark.Body() {
+            @Override
+            public void run() {
+                assertTrue(provider.newEpisodeIndex().sync());
+            }
+        }).assertNoRegression(DEFAULT_MAX_FULL_SYNC_MILLIS_10K, -1);
+    }
+
+    private Benchmark.Result measureRotation(int episodeCount) throws Exception {
+        final SyntheticSeriesGuideProvider provider = newProvider(episodeCount);
+        final EpisodeIndex episodeIndex = provider.newEpisodeIndex();
+        assertTrue(episodeIndex.sync());
+
+        final Context context = getContext();
+        final CandidatePipeline pipeline = newPipeline(provider, episodeIndex);
+        final RotationHistory history = new RotationHistory(historyFile, 50);
+        final PosterCache posterCache =
+                new PosterCache(context, "http://thetvdb.com/banners/", 1024 * 1024);
+        final Random random = new Random(42);
+        final List<Artwork> artworks = new ArrayList<>(ARTWORKS_PER_ROTATION);
+
+        return Benchmark.measure("rotation " + episodeCount, WARMUPS, RUNS,
+                new Benchmark.Body() {
+                    @Override
+                    public void run() {
+                        provider.simulateEdits(EDITS_PER_ROTATION);
+                        assertTrue(episodeIndex.sync());
+
+                        long now = System.currentTimeMillis();
+                        ArtworkSelector selector = new ArtworkSelector();
+                        selector.addAll(pipeline.load(now), now);
+                        List<Candidate> selected = selector.select(ARTWORKS_PER_ROTATION,
+                                Collections.<String>emptySet(), history, random);
+                        assertFalse(selected.isEmpty());
+
+                        artworks.clear();
+                        for (Candidate candidate : selected) {
+                            ArtworkQueue.Entry entry =
+                                    SeriesGuideArtSource.buildEntry(context, candidate);
+                            artworks.add(SeriesGuideArtSource.buildArtwork(entry,
+                                    posterCache.getUri(entry.getPosterPath())));
+                        }
+                        history.add(selected.get(0).historyKey);
+                    }
+                });
+    }
+
+    private SyntheticSeriesGuideProvider newProvider(int episodeCount) {
+        SyntheticSeriesGuideProvider provider = new SyntheticSeriesGuideProvider(
+                SyntheticLibrary.ofEpisodes(episodeCount, System.currentTimeMillis()));
+        provider.attach(getContext());
+        provider.prepare();
+        return provider;
+    }
+
+    private CandidatePipeline newPipeline(SyntheticSeriesGuideProvider provider,
+                                          EpisodeIndex episodeIndex) {
+        ContentResolver contentResolver = provider.getContentResolver();
+        PreferenceSnapshot snapshot = new PreferenceSnapshot(
+                getContext().getSharedPreferences("benchmark", Context.MODE_PRIVATE));
+        BooleanPreference onlyUnwatched = new BooleanPreference(snapshot, "only_unwatched");
+        return new CandidatePipeline(Arrays.<CandidateSource>asList(
+                new EpisodeCandidateSource(episodeIndex, onlyUnwatched),
+                new MovieCandidateSource(episodeIndex, onlyUnwatched),
+                new ListItemCandidateSource(contentResolver, episodeIndex, onlyUnwatched)),
+                executor);
+    }
+}
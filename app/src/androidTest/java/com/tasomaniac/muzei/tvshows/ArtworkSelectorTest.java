@@ -0,0 +1,109 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.test.AndroidTestCase;
+
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+import com.tasomaniac.muzei.tvshows.util.Benchmark;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The pick path: the current artwork is never picked again, recently shown ones only when there
+ * are not enough others, and a pick costs the same among 10k candidates as among a few.
+ */
+public class ArtworkSelectorTest extends AndroidTestCase {
+
+    private static final int CANDIDATES = 10000;
+    private static final int PICKS = 10;
+
+    private RotationHistory history;
+    private File historyFile;
+    private long now;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        historyFile = new File(getContext().getCacheDir(), "artwork_selector_test");
+        //noinspection ResultOfMethodCallIgnored
+        historyFile.delete();
+        history = new RotationHistory(historyFile, 10);
+        now = System.currentTimeMillis();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        //noinspection ResultOfMethodCallIgnored
+        historyFile.delete();
+        super.tearDown();
+    }
+
+    public void testCurrentTokenIsNeverPicked() {
+        ArtworkSelector selector = newSelector(PICKS);
+        String currentToken = "3";
+
+        for (int seed = 0; seed < 100; seed++) {
+            List<Candidate> selected = selector.select(PICKS,
+                    Collections.singleton(currentToken), history, new Random(seed));
+
+            assertEquals(PICKS - 1, selected.size());
+            Set<String> tokens = new HashSet<>();
+            for (Candidate candidate : selected) {
+                assertFalse(currentToken.equals(candidate.token));
+                assertTrue(tokens.add(candidate.token));
+            }
+        }
+    }
+
+    public void testRecentlyShownPickedLast() {
+        ArtworkSelector selector = newSelector(PICKS);
+        history.add(RotationHistory.episodeKey(1));
+        history.add(RotationHistory.episodeKey(2));
+        Set<String> skippedTokens = Collections.emptySet();
+
+        for (int seed = 0; seed < 100; seed++) {
+            List<Candidate> others = selector.select(PICKS - 2, skippedTokens, history,
+                    new Random(seed));
+            for (Candidate candidate : others) {
+                assertFalse(history.contains(candidate.historyKey));
+            }
+
+            List<Candidate> all = selector.select(PICKS, skippedTokens, history,
+                    new Random(seed));
+            assertEquals(PICKS, all.size());
+            assertTrue(history.contains(all.get(PICKS - 1).historyKey));
+            assertTrue(history.contains(all.get(PICKS - 2).historyKey));
+        }
+    }
+
+    public void testPickDoesNotAllocatePerCandidate() throws Exception {
+        final ArtworkSelector selector = newSelector(CANDIDATES);
+        final Set<String> skippedTokens = Collections.singleton(String.valueOf(CANDIDATES / 2));
+        final Random random = new Random(0);
+
+        Benchmark.Result result = Benchmark.measure("select among 10k", 2, 10,
+                new Benchmark.Body() {
+                    @Override
+                    public void run() {
+                        assertEquals(PICKS,
+                                selector.select(PICKS, skippedTokens, history, random).size());
+                    }
+                });
+
+        // The taken flags and the lists, nothing per candidate.
+        result.assertWithin(-1, CANDIDATES / 100);
+    }
+
+    private ArtworkSelector newSelector(int size) {
+        ArtworkSelector selector = new ArtworkSelector();
+        for (int id = 1; id <= size; id++) {
+            selector.add(new Candidate(String.valueOf(id), RotationHistory.episodeKey(id),
+                    "Show " + id, null, null, now + id * 60000L, true), now);
+        }
+        return selector;
+    }
+}
@@ -0,0 +1,63 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.tasomaniac.muzei.tvshows.util.Benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A burst of events must neither block the sender nor lose track of events: every event is
+ * either delivered to the sink, off the sending thread, or counted as dropped.
+ */
+public class BatchingAnalyticsTest extends AndroidTestCase {
+
+    private static final int EVENTS = 10000;
+    private static final double MAX_BURST_MILLIS = 200;
+    private static final long DELIVERY_TIMEOUT_MILLIS = 10000;
+
+    public void testBurst() throws Exception {
+        final CountingAnalytics sink = new CountingAnalytics();
+        final BatchingAnalytics analytics = new BatchingAnalytics(sink);
+
+        Benchmark.once("10k event burst", new Benchmark.Body() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EVENTS; i++) {
+                    analytics.sendEvent("Test", "Burst", null, i);
+                }
+            }
+        }).assertWithin(MAX_BURST_MILLIS, -1);
+
+        long deadline = SystemClock.elapsedRealtime() + DELIVERY_TIMEOUT_MILLIS;
+        while (sink.events.get() + analytics.getDroppedCount() < EVENTS
+                && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(50);
+        }
+        assertEquals(EVENTS, sink.events.get() + analytics.getDroppedCount());
+        assertTrue(sink.events.get() >= BatchingAnalytics.CAPACITY);
+        assertFalse(sink.calledOnSender);
+    }
+
+    private static final class CountingAnalytics implements Analytics {
+        private final Thread sender = Thread.currentThread();
+        final AtomicInteger events = new AtomicInteger();
+        volatile boolean calledOnSender;
+
+        @Override
+        public void sendScreenView(String screenName) {
+        }
+
+        @Override
+        public void sendEvent(String category, String action, String label, long value) {
+            calledOnSender |= Thread.currentThread() == sender;
+            events.incrementAndGet();
+        }
+
+        @Override
+        public void sendEvent(String category, String action, String label) {
+            sendEvent(category, action, label, 0);
+        }
+    }
+}
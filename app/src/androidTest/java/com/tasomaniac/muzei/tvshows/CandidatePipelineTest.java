@@ -0,0 +1,111 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
+import com.tasomaniac.muzei.tvshows.data.SyntheticLibrary;
+import com.tasomaniac.muzei.tvshows.data.SyntheticSeriesGuideProvider;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+import com.tasomaniac.muzei.tvshows.data.prefs.PreferenceSnapshot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks that sources load concurrently, with each other and with a running index sync.
+ */
+public class CandidatePipelineTest extends AndroidTestCase {
+
+    private static final String DATABASE = "candidate_pipeline_test.db";
+
+    /**
+     * Latency of every provider query, far above what reading the mirror takes.
+     */
+    private static final long LATENCY_MILLIS = 300;
+
+    private SyntheticSeriesGuideProvider provider;
+    private EpisodeIndex episodeIndex;
+    private BooleanPreference onlyUnwatched;
+    private ExecutorService executor;
+    private long now;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE);
+        now = System.currentTimeMillis();
+        provider = new SyntheticSeriesGuideProvider(SyntheticLibrary.ofEpisodes(1000, now));
+        provider.attach(getContext());
+        provider.prepare();
+        episodeIndex = provider.newEpisodeIndex(DATABASE);
+        assertTrue(episodeIndex.sync());
+
+        PreferenceSnapshot snapshot = new PreferenceSnapshot(
+                getContext().getSharedPreferences("candidate_pipeline_test", Context.MODE_PRIVATE));
+        onlyUnwatched = new BooleanPreference(snapshot, "only_unwatched");
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        getContext().deleteDatabase(DATABASE);
+        super.tearDown();
+    }
+
+    public void testSourcesOverlap() {
+        provider.setLatency(LATENCY_MILLIS, 0);
+        CandidatePipeline pipeline = new CandidatePipeline(Arrays.<CandidateSource>asList(
+                newListItemSource(), newListItemSource(), newListItemSource()), executor);
+
+        int queriesBefore = provider.getQueryCount();
+        long start = SystemClock.elapsedRealtime();
+        pipeline.load(now);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(3, provider.getQueryCount() - queriesBefore);
+        // One after the other they would take three latencies.
+        assertTrue("sources took " + elapsed + " ms", elapsed < 2 * LATENCY_MILLIS);
+    }
+
+    public void testSourcesLoadWhileIndexSyncs() throws Exception {
+        provider.setLatency(LATENCY_MILLIS, 0);
+        final AtomicBoolean synced = new AtomicBoolean();
+        Thread sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synced.set(episodeIndex.sync());
+            }
+        });
+        int queriesBefore = provider.getQueryCount();
+        sync.start();
+        while (provider.getQueryCount() == queriesBefore) {
+            SystemClock.sleep(1);
+        }
+
+        // The sync holds the index lock and a write transaction while it waits for SeriesGuide.
+        CandidatePipeline pipeline = new CandidatePipeline(Arrays.<CandidateSource>asList(
+                new EpisodeCandidateSource(episodeIndex, onlyUnwatched),
+                new MovieCandidateSource(episodeIndex, onlyUnwatched)), executor);
+        long start = SystemClock.elapsedRealtime();
+        List<Candidate> candidates = pipeline.load(now);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertTrue("sources waited for the sync", sync.isAlive());
+        assertTrue("sources took " + elapsed + " ms", elapsed < LATENCY_MILLIS);
+        assertFalse(candidates.isEmpty());
+
+        sync.join();
+        assertTrue(synced.get());
+    }
+
+    private CandidateSource newListItemSource() {
+        return new ListItemCandidateSource(provider.getContentResolver(), episodeIndex,
+                onlyUnwatched);
+    }
+}
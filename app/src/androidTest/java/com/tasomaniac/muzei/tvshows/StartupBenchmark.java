@@ -0,0 +1,98 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import com.tasomaniac.muzei.tvshows.util.Benchmark;
+import com.tasomaniac.muzei.tvshows.util.PerformanceTest;
+import com.tasomaniac.muzei.tvshows.util.Spans;
+
+import java.util.Date;
+
+import dalvik.system.PathClassLoader;
+
+/**
+ * Startup cost a background rotation pays before it can publish: the cold start of the process,
+ * building the graph and formatting the first byline. What the cold start leaves out is checked by
+ * {@link StartupTest}.
+ */
+@PerformanceTest
+public class StartupBenchmark extends AndroidTestCase {
+
+    private static final double DEFAULT_MAX_APP_INIT_MILLIS = 100;
+    private static final double DEFAULT_MAX_COMPONENT_BUILD_MILLIS = 20;
+    private static final double DEFAULT_MAX_TIME_TOOLS_FIRST_USE_MILLIS = 30;
+    private static final double DEFAULT_MAX_ISO_FORMATTERS_FIRST_USE_MILLIS = 150;
+
+    private static final String TIME_TOOLS = "com.tasomaniac.muzei.tvshows.util.TimeTools";
+    private static final String ISO_DATE_TIME_FORMAT = "org.joda.time.format.ISODateTimeFormat";
+
+    public void testAppInit() throws Exception {
+        // The first sample is the launch of this process, later ones are of test applications.
+        long[] appInit = Spans.samples(Spans.APP_INIT);
+        assertTrue(appInit.length > 0);
+        Benchmark.recorded("app init", appInit[0])
+                .assertNoRegression(DEFAULT_MAX_APP_INIT_MILLIS, -1);
+    }
+
+    /**
+     * First byline format of a process, with the Joda formatters in a holder against creating
+     * them along with {@code TimeTools} as before. Each runs on classes of the app loaded anew,
+     * so both are cold whatever ran before in this process.
+     */
+    public void testTimeToolsFirstUse() throws Exception {
+        final Context context = getContext();
+        final Date date = new Date(1440000000000L);
+
+        final ClassLoader withHolderLoader = newAppClassLoader();
+        Benchmark.Result withHolder = Benchmark.once("time tools first use",
+                new Benchmark.Body() {
+                    @Override
+                    public void run() throws Exception {
+                        formatToLocalTime(withHolderLoader, context, date);
+                    }
+                }).assertNoRegression(DEFAULT_MAX_TIME_TOOLS_FIRST_USE_MILLIS, -1);
+
+        final ClassLoader eagerLoader = newAppClassLoader();
+        Benchmark.Result eager = Benchmark.once("time tools first use, eager iso formatters",
+                new Benchmark.Body() {
+                    @Override
+                    public void run() throws Exception {
+                        formatToLocalTime(eagerLoader, context, date);
+                        Class<?> isoFormat = Class.forName(ISO_DATE_TIME_FORMAT, true,
+                                eagerLoader);
+                        Object dateTime = isoFormat.getMethod("dateTime").invoke(null);
+                        dateTime.getClass().getMethod("withZoneUTC").invoke(dateTime);
+                        isoFormat.getMethod("date").invoke(null);
+                    }
+                }).assertNoRegression(DEFAULT_MAX_ISO_FORMATTERS_FIRST_USE_MILLIS, -1);
+
+        assertTrue(withHolder + " vs " + eager, withHolder.p50Nanos < eager.p50Nanos);
+    }
+
+    public void testComponentBuild() throws Exception {
+        final App app = App.get(getContext());
+        // Nothing behind Lazy is created by building the graph.
+        Benchmark.measure("component build", 5, 50, new Benchmark.Body() {
+            @Override
+            public void run() {
+                AppComponent.Initializer.init(app);
+            }
+        }).assertNoRegression(DEFAULT_MAX_COMPONENT_BUILD_MILLIS, -1);
+    }
+
+    /**
+     * Loads the classes of the app again, sharing only those of the framework.
+     */
+    private ClassLoader newAppClassLoader() {
+        return new PathClassLoader(getContext().getPackageCodePath(),
+                Context.class.getClassLoader());
+    }
+
+    private static void formatToLocalTime(ClassLoader loader, Context context, Date date)
+            throws Exception {
+        Class.forName(TIME_TOOLS, true, loader)
+                .getMethod("formatToLocalTime", Context.class, Date.class)
+                .invoke(null, context, date);
+    }
+}
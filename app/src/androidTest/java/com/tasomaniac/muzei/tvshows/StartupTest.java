@@ -0,0 +1,28 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.test.ApplicationTestCase;
+
+/**
+ * What {@link App#onCreate()} leaves for later, checked on a fresh {@link App} so earlier tests
+ * in the process do not matter.
+ */
+public class StartupTest extends ApplicationTestCase<App> {
+
+    public StartupTest() {
+        super(App.class);
+    }
+
+    public void testGraphNotBuiltOnCreate() {
+        createApplication();
+        // Crash reporting and analytics come from the graph, so neither is created either.
+        assertFalse(getApplication().isComponentBuilt());
+    }
+
+    public void testGraphBuiltOnFirstUse() {
+        createApplication();
+        App app = getApplication();
+        AppComponent component = app.component();
+        assertTrue(app.isComponentBuilt());
+        assertSame(component, app.component());
+    }
+}
@@ -0,0 +1,166 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentResolver;
+import android.text.format.DateUtils;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Movies;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Syncs the synthetic library into an in-memory mirror and checks the mirror answers like a
+ * brute-force query against the provider.
+ */
+public class EpisodeIndexTest extends AndroidTestCase {
+
+    private static final int LIMIT = 50;
+
+    private SyntheticSeriesGuideProvider provider;
+    private MockContentResolver contentResolver;
+    private EpisodeIndex episodeIndex;
+    private long now;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        now = System.currentTimeMillis();
+        provider = new SyntheticSeriesGuideProvider(new SyntheticLibrary.Builder(now).build());
+        contentResolver = provider.attach(getContext());
+        episodeIndex = new EpisodeIndex(new MirrorDatabase(getContext(), null), contentResolver);
+        assertTrue(episodeIndex.sync());
+    }
+
+    public void testFindEpisodesMatchesProvider() {
+        long from = now - 3 * DateUtils.DAY_IN_MILLIS;
+        long to = now + 30 * DateUtils.DAY_IN_MILLIS;
+
+        for (boolean onlyUnwatched : new boolean[]{false, true}) {
+            List<Long> expected = bruteForceReleaseTimes(from, to, onlyUnwatched);
+            List<Long> actual = new ArrayList<>();
+            for (EpisodeIndex.Episode episode
+                    : episodeIndex.findEpisodes(from, to, onlyUnwatched, false, LIMIT)) {
+                actual.add(episode.getReleaseTime());
+                assertTrue(episodeIndex.containsShow(episode.getShowId()));
+                assertTrue(!onlyUnwatched || !episode.isWatched());
+            }
+            assertEquals(LIMIT, actual.size());
+            assertEquals(expected, actual);
+        }
+    }
+
+    public void testWatchingAnEpisodeIsSynced() {
+        EpisodeIndex.Episode episode = episodeIndex.findEpisodes(
+                now, now + DateUtils.WEEK_IN_MILLIS, true, false, 1).get(0);
+        assertTrue(episodeIndex.containsEpisode(episode.getId(), true));
+
+        ContentValues values = new ContentValues();
+        values.put(Episodes.WATCHED, 1);
+        contentResolver.update(Episodes.CONTENT_URI, values, Episodes._ID + "=?",
+                new String[]{String.valueOf(episode.getId())});
+        assertTrue(episodeIndex.sync());
+
+        assertFalse(episodeIndex.containsEpisode(episode.getId(), true));
+        assertTrue(episodeIndex.containsEpisode(episode.getId(), false));
+    }
+
+    public void testHidingAShowHidesItsEpisodes() {
+        EpisodeIndex.Episode episode = episodeIndex.findEpisodes(
+                now, now + DateUtils.WEEK_IN_MILLIS, false, false, 1).get(0);
+
+        ContentValues values = new ContentValues();
+        values.put(Shows.HIDDEN, 1);
+        contentResolver.update(Shows.CONTENT_URI, values, Shows._ID + "=?",
+                new String[]{String.valueOf(episode.getShowId())});
+        assertTrue(episodeIndex.sync());
+
+        assertFalse(episodeIndex.containsShow(episode.getShowId()));
+        assertFalse(episodeIndex.containsEpisode(episode.getId(), false));
+    }
+
+    public void testGetEpisodesMatchesSingleLookups() {
+        List<Integer> ids = new ArrayList<>();
+        for (EpisodeIndex.Episode episode : episodeIndex.findEpisodes(
+                now - DateUtils.WEEK_IN_MILLIS, now + DateUtils.WEEK_IN_MILLIS, false, false,
+                LIMIT)) {
+            ids.add(episode.getId());
+        }
+        ids.add(-1);
+
+        for (boolean onlyUnwatched : new boolean[]{false, true}) {
+            Set<Integer> expected = new HashSet<>();
+            for (int id : ids) {
+                if (episodeIndex.containsEpisode(id, onlyUnwatched)) {
+                    expected.add(id);
+                }
+            }
+            Set<Integer> actual = new HashSet<>();
+            for (EpisodeIndex.Episode episode : episodeIndex.getEpisodes(ids, onlyUnwatched)) {
+                actual.add(episode.getId());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    public void testRemovingAMovieFromTheWatchlistIsSynced() {
+        final int[] tmdbId = {-1};
+        episodeIndex.forEachWatchlistMovie(false, new CursorMapper.Visitor<MovieRow>() {
+            @Override
+            public boolean visit(@NonNull MovieRow row) {
+                tmdbId[0] = row.tmdbId;
+                return false;
+            }
+        });
+        assertTrue(episodeIndex.containsMovie(tmdbId[0], false));
+
+        contentResolver.delete(Movies.CONTENT_URI, Movies.TMDB_ID + "=?",
+                new String[]{String.valueOf(tmdbId[0])});
+        assertTrue(episodeIndex.sync());
+
+        assertFalse(episodeIndex.containsMovie(tmdbId[0], false));
+    }
+
+    /**
+     * Release times of the first {@link #LIMIT} matching episodes, read from the provider without
+     * the index.
+     */
+    private List<Long> bruteForceReleaseTimes(long from, long to, boolean onlyUnwatched) {
+        Set<Integer> hiddenShowIds = new HashSet<>();
+        Cursor shows = contentResolver.query(Shows.CONTENT_URI, new String[]{Shows._ID},
+                Shows.HIDDEN + "=1", null, null);
+        try {
+            while (shows.moveToNext()) {
+                hiddenShowIds.add(shows.getInt(0));
+            }
+        } finally {
+            shows.close();
+        }
+
+        List<Long> releaseTimes = new ArrayList<>();
+        Cursor episodes = contentResolver.query(Episodes.CONTENT_URI,
+                new String[]{Episodes.FIRSTAIREDMS, Shows.REF_SHOW_ID, Episodes.WATCHED},
+                null, null, Episodes.FIRSTAIREDMS + " ASC");
+        try {
+            while (episodes.moveToNext() && releaseTimes.size() < LIMIT) {
+                long releaseTime = episodes.getLong(0);
+                if (releaseTime < from || releaseTime >= to
+                        || hiddenShowIds.contains(episodes.getInt(1))
+                        || onlyUnwatched && episodes.getInt(2) == 1) {
+                    continue;
+                }
+                releaseTimes.add(releaseTime);
+            }
+        } finally {
+            episodes.close();
+        }
+        return releaseTimes;
+    }
+}
@@ -0,0 +1,276 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prefetches posters from a local HTTP server standing in for TheTVDB.
+ */
+public class PosterCacheTest extends AndroidTestCase {
+
+    private static final int POSTER_BYTES = 1000;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private PosterServer server;
+    private ExecutorService executor;
+    private File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = PosterCache.getDirectory(getContext());
+        deleteDirectory();
+        server = new PosterServer();
+        new Thread(server, "PosterServer").start();
+        // Several threads, so only the pending set keeps a poster from being fetched twice.
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.release.countDown();
+        executor.shutdownNow();
+        server.close();
+        deleteDirectory();
+        super.tearDown();
+    }
+
+    public void testServedFromCacheOnceFetched() throws Exception {
+        PosterCache cache = newCache(10 * POSTER_BYTES);
+
+        Uri remote = cache.getUri("a.jpg");
+        assertEquals(server.baseUrl() + "a.jpg", remote.toString());
+
+        cache.prefetch("a.jpg");
+        awaitPrefetches();
+
+        Uri cached = cache.getUri("a.jpg");
+        assertEquals("content", cached.getScheme());
+        assertEquals(PosterCache.AUTHORITY, cached.getAuthority());
+        assertEquals(PosterCache.fileName("a.jpg"), cached.getLastPathSegment());
+        assertEquals(POSTER_BYTES, new File(directory, cached.getLastPathSegment()).length());
+        assertEquals(1, server.requestCount("/a.jpg"));
+    }
+
+    public void testConcurrentPrefetchesDownloadOnce() throws Exception {
+        final PosterCache cache = newCache(10 * POSTER_BYTES);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        cache.prefetch("slow.jpg");
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        server.release.countDown();
+        awaitPrefetches();
+
+        assertEquals(1, server.requestCount("/slow.jpg"));
+        assertEquals("content", cache.getUri("slow.jpg").getScheme());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        PosterCache cache = newCache(2 * POSTER_BYTES + POSTER_BYTES / 2);
+        cache.prefetch("a.jpg");
+        cache.prefetch("b.jpg");
+        awaitPrefetches(); // Restarts the executor, so c is fetched after a is used.
+
+        assertEquals("content", cache.getUri("a.jpg").getScheme());
+        cache.prefetch("c.jpg");
+        awaitPrefetches();
+
+        assertFalse(new File(directory, PosterCache.fileName("b.jpg")).exists());
+        assertEquals(server.baseUrl() + "b.jpg", cache.getUri("b.jpg").toString());
+        assertEquals("content", cache.getUri("a.jpg").getScheme());
+        assertEquals("content", cache.getUri("c.jpg").getScheme());
+    }
+
+    public void testFailedDownloadLeavesNothingToServe() throws Exception {
+        PosterCache cache = newCache(10 * POSTER_BYTES);
+        cache.prefetch("broken.jpg");
+        cache.prefetch("missing.jpg");
+        awaitPrefetches();
+
+        assertEquals(server.baseUrl() + "broken.jpg", cache.getUri("broken.jpg").toString());
+        assertEquals(server.baseUrl() + "missing.jpg", cache.getUri("missing.jpg").toString());
+        String[] files = directory.list();
+        assertNotNull(files);
+        assertEquals(0, files.length);
+    }
+
+    public void testDownloadInProgressIsNotServed() throws Exception {
+        PosterCache cache = newCache(10 * POSTER_BYTES);
+        cache.prefetch("slow.jpg");
+
+        String name = PosterCache.fileName("slow.jpg");
+        File temp = null;
+        long deadline = SystemClock.elapsedRealtime() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (temp == null && SystemClock.elapsedRealtime() < deadline) {
+            String[] files = directory.list();
+            for (String file : files != null ? files : new String[0]) {
+                if (file.startsWith(name)) {
+                    temp = new File(directory, file);
+                }
+            }
+            SystemClock.sleep(10);
+        }
+        assertNotNull(temp);
+
+        PosterProvider provider = new PosterProvider();
+        provider.attachInfo(getContext(), null);
+        try {
+            provider.openFile(new Uri.Builder().scheme("content").authority(PosterCache.AUTHORITY)
+                    .appendPath(temp.getName()).build(), "r");
+            fail("Served the partial poster " + temp);
+        } catch (FileNotFoundException expected) {
+        }
+        assertEquals(server.baseUrl() + "slow.jpg", cache.getUri("slow.jpg").toString());
+    }
+
+    private PosterCache newCache(long maxSizeBytes) {
+        return new PosterCache(getContext(), server.baseUrl(), maxSizeBytes, executor);
+    }
+
+    /**
+     * Waits for all queued prefetches and starts a new executor for the next ones.
+     */
+    private void awaitPrefetches() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Serves {@link #POSTER_BYTES} bytes for every path, except:
+     * <ul>
+     * <li> {@code /slow.jpg} sends half of the poster and the rest once {@link #release}d,
+     * <li> {@code /broken.jpg} closes the connection after half of the poster,
+     * <li> {@code /missing.jpg} answers with 404.
+     * </ul>
+     */
+    private static final class PosterServer implements Runnable {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        private final ServerSocket serverSocket;
+        private final ExecutorService handlers = Executors.newCachedThreadPool();
+        private final ConcurrentHashMap<String, AtomicInteger> requests =
+                new ConcurrentHashMap<>();
+
+        PosterServer() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+        }
+
+        int requestCount(String path) {
+            AtomicInteger count = requests.get(path);
+            return count != null ? count.get() : 0;
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            handlers.shutdownNow();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    handlers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                handle(socket);
+                            } catch (IOException | InterruptedException ignored) {
+                            } finally {
+                                try {
+                                    socket.close();
+                                } catch (IOException ignored) {
+                                }
+                            }
+                        }
+                    });
+                }
+            } catch (IOException ignored) {
+                // Closed.
+            }
+        }
+
+        private void handle(Socket socket) throws IOException, InterruptedException {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String requestLine = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                // Headers are not needed.
+            }
+            if (requestLine == null) {
+                return;
+            }
+            String path = requestLine.split(" ")[1];
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger previous = requests.putIfAbsent(path, count);
+            (previous != null ? previous : count).incrementAndGet();
+
+            OutputStream out = socket.getOutputStream();
+            if ("/missing.jpg".equals(path)) {
+                out.write(("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n"
+                        + "Connection: close\r\n\r\n").getBytes("US-ASCII"));
+                out.flush();
+                return;
+            }
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: image/jpeg\r\nContent-Length: "
+                    + POSTER_BYTES + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+            byte[] half = new byte[POSTER_BYTES / 2];
+            out.write(half);
+            out.flush();
+            if ("/broken.jpg".equals(path)) {
+                return;
+            }
+            if ("/slow.jpg".equals(path)) {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            out.write(new byte[POSTER_BYTES - half.length]);
+            out.flush();
+        }
+    }
+}
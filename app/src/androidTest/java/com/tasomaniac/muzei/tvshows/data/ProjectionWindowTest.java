@@ -0,0 +1,68 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.DatabaseUtils;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+import java.util.Locale;
+
+/**
+ * How many rows of the narrow sync projection fit into a {@link CursorWindow} against the
+ * projection the art source used to query.
+ */
+public class ProjectionWindowTest extends AndroidTestCase {
+
+    /**
+     * Size of a {@link CursorWindow} created without a size, the platform default since API 15.
+     */
+    private static final int WINDOW_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Columns the art source used to read from the episodes table for every candidate.
+     */
+    private static final String[] WIDE_PROJECTION = new String[]{
+            Episodes._ID,
+            Episodes.TITLE,
+            Episodes.NUMBER,
+            Episodes.SEASON,
+            Episodes.FIRSTAIREDMS,
+            Episodes.WATCHED,
+            Episodes.COLLECTED,
+            Shows.REF_SHOW_ID
+    };
+
+    public void testNarrowProjectionFitsMoreRowsPerWindow() {
+        SyntheticSeriesGuideProvider provider = new SyntheticSeriesGuideProvider();
+        ContentResolver contentResolver = provider.attach(getContext());
+        int episodeCount = provider.getLibrary().episodeCount();
+
+        int wideRows = rowsPerWindow(contentResolver, WIDE_PROJECTION);
+        int narrowRows =
+                rowsPerWindow(contentResolver, EpisodeIndex.EpisodeQuery.PROJECTION.columns());
+        Log.i("Benchmark", String.format(Locale.US,
+                "CursorWindow bytes per row: wide %d, narrow %d",
+                WINDOW_BYTES / wideRows, WINDOW_BYTES / narrowRows));
+
+        // Both only fill the window if the library does not fit in, else rows are not comparable.
+        assertTrue(wideRows < episodeCount);
+        assertTrue(narrowRows == episodeCount || narrowRows * 10 >= wideRows * 13);
+    }
+
+    private static int rowsPerWindow(ContentResolver contentResolver, String[] projection) {
+        Cursor cursor = contentResolver.query(Episodes.CONTENT_URI, projection, null, null, null);
+        CursorWindow window = new CursorWindow("projection");
+        try {
+            DatabaseUtils.cursorFillWindow(cursor, 0, window);
+            return window.getNumRows();
+        } finally {
+            window.close();
+            cursor.close();
+        }
+    }
+}
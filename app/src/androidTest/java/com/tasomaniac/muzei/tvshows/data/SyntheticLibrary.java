@@ -0,0 +1,321 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.text.format.DateUtils;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.ListItemTypes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.ListItems;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Movies;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Seasons;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+import java.util.Random;
+
+/**
+ * Shape of a generated SeriesGuide library: how many shows, seasons and episodes, how releases are
+ * spread around {@link #now} and how many episodes are watched. Generating the same library twice
+ * gives the same rows.
+ *
+ * <p> Ids are dense and start at 1. Episodes of a show are numbered season by season, so the
+ * episode with id {@code n} belongs to show {@code 1 + (n - 1) / episodesPerShow()}.
+ */
+public final class SyntheticLibrary {
+
+    static final String TABLE_SHOWS = "shows";
+    static final String TABLE_SEASONS = "seasons";
+    static final String TABLE_EPISODES = "episodes";
+    static final String TABLE_MOVIES = "movies";
+    static final String TABLE_LIST_ITEMS = "listitems";
+
+    public final long seed;
+    public final long now;
+    public final int showCount;
+    public final int seasonsPerShow;
+    public final int episodesPerSeason;
+    /**
+     * Time between two episodes of a show.
+     */
+    public final long releaseIntervalMillis;
+    /**
+     * The first episode of a show is released up to this long before {@link #now}.
+     */
+    public final long releaseSpreadMillis;
+    /**
+     * Share of episodes without a release date, like specials.
+     */
+    public final double unknownReleaseRatio;
+    /**
+     * Share of released episodes which are watched.
+     */
+    public final double watchedRatio;
+    public final double hiddenRatio;
+    public final double favoriteRatio;
+    public final int movieCount;
+    public final double watchlistRatio;
+    public final int listItemCount;
+
+    private SyntheticLibrary(Builder builder) {
+        seed = builder.seed;
+        now = builder.now;
+        showCount = builder.showCount;
+        seasonsPerShow = builder.seasonsPerShow;
+        episodesPerSeason = builder.episodesPerSeason;
+        releaseIntervalMillis = builder.releaseIntervalMillis;
+        releaseSpreadMillis = builder.releaseSpreadMillis;
+        unknownReleaseRatio = builder.unknownReleaseRatio;
+        watchedRatio = builder.watchedRatio;
+        hiddenRatio = builder.hiddenRatio;
+        favoriteRatio = builder.favoriteRatio;
+        movieCount = builder.movieCount;
+        watchlistRatio = builder.watchlistRatio;
+        listItemCount = builder.listItemCount;
+    }
+
+    public int episodesPerShow() {
+        return seasonsPerShow * episodesPerSeason;
+    }
+
+    public int episodeCount() {
+        return showCount * episodesPerShow();
+    }
+
+    /**
+     * Returns a library of about {@code episodeCount} episodes in shows of 5 seasons of 20, the
+     * shape of a typical SeriesGuide user scaled up or down.
+     */
+    public static SyntheticLibrary ofEpisodes(int episodeCount, long now) {
+        int showCount = Math.max(1, episodeCount / 100);
+        int episodesPerSeason = Math.max(1, episodeCount / showCount / 5);
+        return new Builder(now)
+                .shows(showCount, Math.min(5, episodeCount), episodesPerSeason)
+                .build();
+    }
+
+    void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SHOWS + " ("
+                + Shows._ID + " INTEGER PRIMARY KEY,"
+                + Shows.TITLE + " TEXT,"
+                + Shows.NETWORK + " TEXT,"
+                + Shows.POSTER + " TEXT,"
+                + Shows.HIDDEN + " INTEGER DEFAULT 0,"
+                + Shows.LASTEDIT + " INTEGER DEFAULT 0,"
+                + Shows.NEXTEPISODE + " TEXT DEFAULT '',"
+                + Shows.NEXTAIRDATEMS + " INTEGER DEFAULT 0,"
+                + Shows.FAVORITE + " INTEGER DEFAULT 0,"
+                + Shows.RATING_USER + " INTEGER DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + TABLE_SEASONS + " ("
+                + Seasons._ID + " INTEGER PRIMARY KEY,"
+                + Seasons.COMBINED + " INTEGER,"
+                + Shows.REF_SHOW_ID + " INTEGER)");
+        db.execSQL("CREATE TABLE " + TABLE_EPISODES + " ("
+                + Episodes._ID + " INTEGER PRIMARY KEY,"
+                + Episodes.TITLE + " TEXT,"
+                + Episodes.SEASON + " INTEGER,"
+                + Episodes.NUMBER + " INTEGER,"
+                + Episodes.FIRSTAIREDMS + " INTEGER DEFAULT -1,"
+                + Seasons.REF_SEASON_ID + " INTEGER,"
+                + Shows.REF_SHOW_ID + " INTEGER,"
+                + Episodes.WATCHED + " INTEGER DEFAULT 0,"
+                + Episodes.COLLECTED + " INTEGER DEFAULT 0,"
+                + Episodes.LAST_EDITED + " INTEGER DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + TABLE_MOVIES + " ("
+                + BaseColumns._ID + " INTEGER PRIMARY KEY,"
+                + Movies.TMDB_ID + " INTEGER UNIQUE,"
+                + Movies.TITLE + " TEXT,"
+                + Movies.POSTER + " TEXT,"
+                + Movies.RELEASED_UTC_MS + " INTEGER DEFAULT 0,"
+                + Movies.RATING_USER + " INTEGER DEFAULT 0,"
+                + Movies.WATCHED + " INTEGER DEFAULT 0,"
+                + Movies.IN_WATCHLIST + " INTEGER DEFAULT 0,"
+                + Movies.LAST_UPDATED + " INTEGER DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + TABLE_LIST_ITEMS + " ("
+                + BaseColumns._ID + " INTEGER PRIMARY KEY,"
+                + ListItems.LIST_ITEM_ID + " TEXT,"
+                + ListItems.ITEM_REF_ID + " TEXT,"
+                + ListItems.TYPE + " INTEGER)");
+    }
+
+    void generate(SQLiteDatabase db) {
+        Random random = new Random(seed);
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int showId = 1; showId <= showCount; showId++) {
+                generateShow(db, values, random, showId);
+            }
+            generateMovies(db, values, random);
+            generateListItems(db, values, random);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void generateShow(SQLiteDatabase db, ContentValues values, Random random,
+                              int showId) {
+        long firstRelease = now - (long) (random.nextDouble() * releaseSpreadMillis);
+        String nextEpisode = "";
+        long nextReleaseTime = 0;
+        int episodeId = (showId - 1) * episodesPerShow();
+        long releaseTime = firstRelease;
+        for (int season = 1; season <= seasonsPerShow; season++) {
+            int seasonId = (showId - 1) * seasonsPerShow + season;
+            values.clear();
+            values.put(Seasons._ID, seasonId);
+            values.put(Seasons.COMBINED, season);
+            values.put(Shows.REF_SHOW_ID, showId);
+            db.insertOrThrow(TABLE_SEASONS, null, values);
+
+            for (int number = 1; number <= episodesPerSeason; number++) {
+                episodeId++;
+                boolean unknown = random.nextDouble() < unknownReleaseRatio;
+                boolean released = !unknown && releaseTime < now;
+                if (!unknown && !released && nextEpisode.isEmpty()) {
+                    nextEpisode = String.valueOf(episodeId);
+                    nextReleaseTime = releaseTime;
+                }
+                values.clear();
+                values.put(Episodes._ID, episodeId);
+                values.put(Episodes.TITLE, "Episode " + season + "x" + number);
+                values.put(Episodes.SEASON, season);
+                values.put(Episodes.NUMBER, number);
+                values.put(Episodes.FIRSTAIREDMS, unknown ? -1 : releaseTime);
+                values.put(Seasons.REF_SEASON_ID, seasonId);
+                values.put(Shows.REF_SHOW_ID, showId);
+                values.put(Episodes.WATCHED,
+                        released && random.nextDouble() < watchedRatio ? 1 : 0);
+                values.put(Episodes.COLLECTED, random.nextInt(2));
+                values.put(Episodes.LAST_EDITED, now);
+                db.insertOrThrow(TABLE_EPISODES, null, values);
+                if (!unknown) {
+                    releaseTime += releaseIntervalMillis;
+                }
+            }
+        }
+
+        values.clear();
+        values.put(Shows._ID, showId);
+        values.put(Shows.TITLE, "Show " + showId);
+        values.put(Shows.NETWORK, "Network " + showId % 10);
+        values.put(Shows.POSTER, "posters/" + showId + ".jpg");
+        values.put(Shows.HIDDEN, random.nextDouble() < hiddenRatio ? 1 : 0);
+        values.put(Shows.LASTEDIT, now);
+        values.put(Shows.NEXTEPISODE, nextEpisode);
+        values.put(Shows.NEXTAIRDATEMS, nextReleaseTime);
+        values.put(Shows.FAVORITE, random.nextDouble() < favoriteRatio ? 1 : 0);
+        values.put(Shows.RATING_USER, random.nextInt(11));
+        db.insertOrThrow(TABLE_SHOWS, null, values);
+    }
+
+    private void generateMovies(SQLiteDatabase db, ContentValues values, Random random) {
+        for (int tmdbId = 1; tmdbId <= movieCount; tmdbId++) {
+            values.clear();
+            values.put(Movies.TMDB_ID, tmdbId);
+            values.put(Movies.TITLE, "Movie " + tmdbId);
+            values.put(Movies.POSTER, "/" + tmdbId + ".jpg");
+            values.put(Movies.RELEASED_UTC_MS,
+                    now - random.nextInt(3650) * DateUtils.DAY_IN_MILLIS);
+            values.put(Movies.RATING_USER, random.nextInt(11));
+            values.put(Movies.WATCHED, random.nextDouble() < watchedRatio ? 1 : 0);
+            values.put(Movies.IN_WATCHLIST, random.nextDouble() < watchlistRatio ? 1 : 0);
+            values.put(Movies.LAST_UPDATED, now);
+            db.insertOrThrow(TABLE_MOVIES, null, values);
+        }
+    }
+
+    private void generateListItems(SQLiteDatabase db, ContentValues values, Random random) {
+        if (showCount == 0) {
+            return;
+        }
+        for (int i = 1; i <= listItemCount; i++) {
+            boolean show = i % 2 == 0;
+            int refId = 1 + random.nextInt(show ? showCount : episodeCount());
+            int type = show ? ListItemTypes.SHOW : ListItemTypes.EPISODE;
+            values.clear();
+            values.put(ListItems.LIST_ITEM_ID, refId + "-" + type + "-list");
+            values.put(ListItems.ITEM_REF_ID, String.valueOf(refId));
+            values.put(ListItems.TYPE, type);
+            db.insertOrThrow(TABLE_LIST_ITEMS, null, values);
+        }
+    }
+
+    /**
+     * Defaults to 500 shows of 5 seasons of 20 weekly episodes, 50k in total, released over the
+     * last year and a half and 80% watched.
+     */
+    public static final class Builder {
+        private final long now;
+        private long seed = 42;
+        private int showCount = 500;
+        private int seasonsPerShow = 5;
+        private int episodesPerSeason = 20;
+        private long releaseIntervalMillis = DateUtils.WEEK_IN_MILLIS;
+        private long releaseSpreadMillis = 18 * 30 * DateUtils.DAY_IN_MILLIS;
+        private double unknownReleaseRatio = 0.02;
+        private double watchedRatio = 0.8;
+        private double hiddenRatio = 0.05;
+        private double favoriteRatio = 0.15;
+        private int movieCount = 50;
+        private double watchlistRatio = 0.5;
+        private int listItemCount = 20;
+
+        /**
+         * @param now Releases are spread around this.
+         */
+        public Builder(long now) {
+            this.now = now;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder shows(int showCount, int seasonsPerShow, int episodesPerSeason) {
+            this.showCount = showCount;
+            this.seasonsPerShow = seasonsPerShow;
+            this.episodesPerSeason = episodesPerSeason;
+            return this;
+        }
+
+        public Builder releases(long intervalMillis, long spreadMillis, double unknownRatio) {
+            this.releaseIntervalMillis = intervalMillis;
+            this.releaseSpreadMillis = spreadMillis;
+            this.unknownReleaseRatio = unknownRatio;
+            return this;
+        }
+
+        public Builder watchedRatio(double watchedRatio) {
+            this.watchedRatio = watchedRatio;
+            return this;
+        }
+
+        public Builder hiddenRatio(double hiddenRatio) {
+            this.hiddenRatio = hiddenRatio;
+            return this;
+        }
+
+        public Builder favoriteRatio(double favoriteRatio) {
+            this.favoriteRatio = favoriteRatio;
+            return this;
+        }
+
+        public Builder movies(int movieCount, double watchlistRatio) {
+            this.movieCount = movieCount;
+            this.watchlistRatio = watchlistRatio;
+            return this;
+        }
+
+        public Builder listItems(int listItemCount) {
+            this.listItemCount = listItemCount;
+            return this;
+        }
+
+        public SyntheticLibrary build() {
+            return new SyntheticLibrary(this);
+        }
+    }
+}
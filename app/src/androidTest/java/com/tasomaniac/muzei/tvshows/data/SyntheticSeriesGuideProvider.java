@@ -0,0 +1,217 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.test.mock.MockContentResolver;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the SeriesGuide provider serving a {@link SyntheticLibrary}. Tables carry the
+ * SeriesGuide column names and the sort order is passed through, so {@code LIMIT} works like in
+ * SeriesGuide.
+ *
+ * <p> Queries can be slowed down with {@link #setLatency} to stand in for a busy SeriesGuide
+ * process, and {@link #simulateEdits} generates the deltas an incremental sync picks up.
+ */
+public class SyntheticSeriesGuideProvider extends ContentProvider {
+
+    private final SyntheticLibrary library;
+    private final Random editRandom;
+    private final Random latencyRandom;
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    private SQLiteOpenHelper helper;
+    private MockContentResolver contentResolver;
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private long editTime;
+
+    /**
+     * Serves the default 50k episode library.
+     */
+    public SyntheticSeriesGuideProvider() {
+        this(new SyntheticLibrary.Builder(System.currentTimeMillis()).build());
+    }
+
+    public SyntheticSeriesGuideProvider(SyntheticLibrary library) {
+        this.library = library;
+        this.editRandom = new Random(library.seed + 1);
+        this.latencyRandom = new Random(library.seed + 2);
+        this.editTime = library.now;
+    }
+
+    /**
+     * Attaches the provider to {@code context} and returns a resolver which routes
+     * {@link SeriesGuideContract#CONTENT_AUTHORITY} to it.
+     */
+    public MockContentResolver attach(Context context) {
+        attachInfo(context, null);
+        contentResolver = new MockContentResolver();
+        contentResolver.addProvider(SeriesGuideContract.CONTENT_AUTHORITY, this);
+        return contentResolver;
+    }
+
+    /**
+     * Returns an index which syncs from this provider into an in-memory mirror. Call
+     * {@link #attach} first.
+     */
+    public EpisodeIndex newEpisodeIndex() {
+        return newEpisodeIndex(null);
+    }
+
+    /**
+     * Returns an index which syncs from this provider into the mirror database file
+     * {@code name}, null for an in-memory one. Only a file lets readers run while a sync writes.
+     */
+    public EpisodeIndex newEpisodeIndex(@Nullable String name) {
+        return new EpisodeIndex(new MirrorDatabase(getContext(), name), contentResolver);
+    }
+
+    /**
+     * Returns the resolver created by {@link #attach}.
+     */
+    public MockContentResolver getContentResolver() {
+        return contentResolver;
+    }
+
+    public SyntheticLibrary getLibrary() {
+        return library;
+    }
+
+    @Override
+    public boolean onCreate() {
+        // In-memory, the library is generated when it is first queried.
+        helper = new SQLiteOpenHelper(getContext(), null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                library.createTables(db);
+                library.generate(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        return true;
+    }
+
+    /**
+     * Forces the library to be generated, so it does not count against the first query.
+     */
+    public void prepare() {
+        helper.getWritableDatabase();
+    }
+
+    /**
+     * Delays every query by {@code millis} plus a uniformly distributed jitter of up to
+     * {@code jitterMillis}.
+     */
+    public void setLatency(long millis, long jitterMillis) {
+        latencyMillis = millis;
+        latencyJitterMillis = jitterMillis;
+    }
+
+    /**
+     * Returns the number of queries served, to count round-trips.
+     */
+    public int getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Edits {@code count} random episodes like a SeriesGuide user would: watched flags are
+     * toggled and the edit time of every touched episode moves forward.
+     */
+    public synchronized void simulateEdits(int count) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SQLiteStatement edit = db.compileStatement("UPDATE " + SyntheticLibrary.TABLE_EPISODES
+                + " SET " + Episodes.WATCHED + "=1-" + Episodes.WATCHED + ","
+                + Episodes.LAST_EDITED + "=? WHERE " + Episodes._ID + "=?");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                edit.bindLong(1, ++editTime);
+                edit.bindLong(2, 1 + editRandom.nextInt(library.episodeCount()));
+                edit.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            edit.close();
+        }
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        queryCount.incrementAndGet();
+        injectLatency();
+        return helper.getReadableDatabase()
+                .query(table(uri), projection, selection, selectionArgs, null, null, sortOrder);
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd.seriesguide." + table(uri);
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        long id = helper.getWritableDatabase().insertOrThrow(table(uri), null, values);
+        return uri.buildUpon().appendPath(String.valueOf(id)).build();
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return helper.getWritableDatabase().delete(table(uri), selection, selectionArgs);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return helper.getWritableDatabase().update(table(uri), values, selection, selectionArgs);
+    }
+
+    private void injectLatency() {
+        long millis = latencyMillis;
+        long jitterMillis = latencyJitterMillis;
+        if (jitterMillis > 0) {
+            synchronized (latencyRandom) {
+                millis += (long) (latencyRandom.nextDouble() * jitterMillis);
+            }
+        }
+        if (millis > 0) {
+            SystemClock.sleep(millis);
+        }
+    }
+
+    private static String table(Uri uri) {
+        String path = uri.getPathSegments().isEmpty() ? "" : uri.getPathSegments().get(0);
+        switch (path) {
+            case SeriesGuideContract.PATH_SHOWS:
+                return SyntheticLibrary.TABLE_SHOWS;
+            case SeriesGuideContract.PATH_SEASONS:
+                return SyntheticLibrary.TABLE_SEASONS;
+            case SeriesGuideContract.PATH_EPISODES:
+                return SyntheticLibrary.TABLE_EPISODES;
+            case SeriesGuideContract.PATH_MOVIES:
+                return SyntheticLibrary.TABLE_MOVIES;
+            case SeriesGuideContract.PATH_LIST_ITEMS:
+                return SyntheticLibrary.TABLE_LIST_ITEMS;
+            default:
+                throw new IllegalArgumentException("Unknown uri " + uri);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+public class SyntheticSeriesGuideProviderTest extends AndroidTestCase {
+
+    private static final long NOW = 1440000000000L;
+
+    public void testLibraryHasTheConfiguredShape() {
+        SyntheticLibrary library = new SyntheticLibrary.Builder(NOW)
+                .shows(3, 2, 10)
+                .releases(DateUtils.DAY_IN_MILLIS, 0, 0)
+                .watchedRatio(1)
+                .build();
+        ContentResolver contentResolver = new SyntheticSeriesGuideProvider(library)
+                .attach(getContext());
+
+        assertEquals(3, count(contentResolver, Shows.CONTENT_URI, null));
+        assertEquals(60, count(contentResolver, Episodes.CONTENT_URI, null));
+        // All shows start now, so nothing is released yet and nothing is watched.
+        assertEquals(0, count(contentResolver, Episodes.CONTENT_URI,
+                Episodes.SELECTION_WATCHED));
+        assertEquals(3, count(contentResolver, Shows.CONTENT_URI,
+                Shows.SELECTION_WITH_NEXT_EPISODE));
+    }
+
+    public void testSameSeedGivesSameLibrary() {
+        SyntheticLibrary library = SyntheticLibrary.ofEpisodes(1000, NOW);
+        ContentResolver first = new SyntheticSeriesGuideProvider(library).attach(getContext());
+        ContentResolver second = new SyntheticSeriesGuideProvider(library).attach(getContext());
+
+        String[] projection = {Episodes._ID, Episodes.FIRSTAIREDMS, Episodes.WATCHED};
+        Cursor expected = first.query(Episodes.CONTENT_URI, projection, null, null, null);
+        Cursor actual = second.query(Episodes.CONTENT_URI, projection, null, null, null);
+        try {
+            assertEquals(1000, expected.getCount());
+            assertEquals(DatabaseUtils.dumpCursorToString(expected),
+                    DatabaseUtils.dumpCursorToString(actual));
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    public void testSimulatedEditsMoveTheEditTime() {
+        SyntheticSeriesGuideProvider provider =
+                new SyntheticSeriesGuideProvider(SyntheticLibrary.ofEpisodes(1000, NOW));
+        ContentResolver contentResolver = provider.attach(getContext());
+
+        provider.simulateEdits(10);
+
+        int edited = count(contentResolver, Episodes.CONTENT_URI,
+                Episodes.LAST_EDITED + ">" + NOW);
+        assertTrue(edited > 0 && edited <= 10);
+    }
+
+    public void testLatencyIsInjected() {
+        SyntheticSeriesGuideProvider provider =
+                new SyntheticSeriesGuideProvider(SyntheticLibrary.ofEpisodes(100, NOW));
+        ContentResolver contentResolver = provider.attach(getContext());
+        provider.prepare();
+        provider.setLatency(50, 0);
+
+        long start = SystemClock.elapsedRealtime();
+        count(contentResolver, Shows.CONTENT_URI, null);
+        assertTrue(SystemClock.elapsedRealtime() - start >= 50);
+        assertEquals(1, provider.getQueryCount());
+    }
+
+    private static int count(ContentResolver contentResolver, Uri uri, String selection) {
+        Cursor cursor = contentResolver.query(uri, new String[]{"1"}, selection, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.os.Debug;
+import android.util.Log;
+
+import junit.framework.Assert;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Runs a body repeatedly and reports p50/p99 latency and allocations per run to logcat under the
+ * {@code Benchmark} tag. {@link Result#assertWithin} fails the test when a fixed bound is
+ * exceeded, {@link Result#assertNoRegression} when the calibrated baseline of the device is.
+ *
+ * <p> Latency and allocations are measured in separate passes, allocation counting slows down
+ * the runtime. Allocations are counted process wide, so work a body hands to other threads is
+ * included and the process should be otherwise idle.
+ */
+public final class Benchmark {
+
+    private static final String TAG = "Benchmark";
+
+    /**
+     * Latency may exceed the baseline by this factor, runs on a device are noisy.
+     */
+    private static final double MAX_P99_REGRESSION = 1.5;
+
+    /**
+     * Allocations may exceed the baseline by this factor plus {@link #ALLOCATION_SLACK}, which
+     * covers the runtime allocating on its own during small runs.
+     */
+    private static final double MAX_ALLOCATION_REGRESSION = 1.2;
+    private static final long ALLOCATION_SLACK = 100;
+
+    private static final String P99_NANOS_KEY = ".p99_nanos";
+    private static final String ALLOCATIONS_KEY = ".allocations";
+
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    public static Result measure(String name, int warmups, int runs, Body body)
+            throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            body.run();
+        }
+
+        long[] durations = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            body.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetGlobalAllocCount();
+            Debug.resetGlobalAllocSize();
+            for (int i = 0; i < runs; i++) {
+                body.run();
+            }
+            return new Result(name, Spans.percentile(durations, 50),
+                    Spans.percentile(durations, 99), Debug.getGlobalAllocCount() / runs,
+                    Debug.getGlobalAllocSize() / runs).report();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /**
+     * Latency of a single run of {@code body}, for what only happens once per process like a
+     * cold start. Allocations are not counted.
+     */
+    public static Result once(String name, Body body) throws Exception {
+        long start = System.nanoTime();
+        body.run();
+        long duration = System.nanoTime() - start;
+        return new Result(name, duration, duration, -1, -1).report();
+    }
+
+    /**
+     * Result of a duration recorded elsewhere, e.g. a {@link Spans} sample of the cold start.
+     * Allocations are not counted.
+     */
+    public static Result recorded(String name, long durationNanos) {
+        return new Result(name, durationNanos, durationNanos, -1, -1).report();
+    }
+
+    public static final class Result {
+        public final String name;
+        public final long p50Nanos;
+        public final long p99Nanos;
+        /**
+         * Objects allocated per run, -1 if not counted.
+         */
+        public final long allocations;
+        public final long allocatedBytes;
+
+        Result(String name, long p50Nanos, long p99Nanos, long allocations,
+               long allocatedBytes) {
+            this.name = name;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.allocations = allocations;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public double p50Millis() {
+            return p50Nanos / 1000000.0;
+        }
+
+        public double p99Millis() {
+            return p99Nanos / 1000000.0;
+        }
+
+        Result report() {
+            Log.i(TAG, toString());
+            return this;
+        }
+
+        /**
+         * Fails if the p99 latency exceeds {@code maxP99Millis} or a run allocates more than
+         * {@code maxAllocations} objects. A negative maximum is not checked.
+         */
+        public Result assertWithin(double maxP99Millis, long maxAllocations) {
+            Assert.assertTrue(this + " exceeds p99 " + maxP99Millis + " ms",
+                    maxP99Millis < 0 || p99Millis() <= maxP99Millis);
+            Assert.assertTrue(this + " exceeds " + maxAllocations + " allocations",
+                    maxAllocations < 0 || allocations <= maxAllocations);
+            return this;
+        }
+
+        /**
+         * Fails if the p99 latency or the allocations regressed against the baseline recorded
+         * for this benchmark on the device by {@code connectedBenchmarkCalibrate}. While
+         * calibrating, records this result as the baseline instead.
+         *
+         * <p> Without a baseline, e.g. on a fresh CI device, the defaults are checked like
+         * {@link #assertWithin}. They are generous bounds for a mid-range device, meant to catch
+         * order-of-magnitude regressions. With neither a baseline nor a default the benchmark
+         * fails, it would not check anything.
+         */
+        public Result assertNoRegression(double defaultMaxP99Millis, long defaultMaxAllocations)
+                throws IOException {
+            File file = BenchmarkRunner.getBaselineFile();
+            if (file == null) {
+                return assertDefaults(defaultMaxP99Millis, defaultMaxAllocations);
+            }
+            synchronized (Benchmark.class) {
+                Properties baseline = loadBaseline(file);
+                if (BenchmarkRunner.isCalibrating()) {
+                    baseline.setProperty(name + P99_NANOS_KEY, String.valueOf(p99Nanos));
+                    baseline.setProperty(name + ALLOCATIONS_KEY, String.valueOf(allocations));
+                    saveBaseline(file, baseline);
+                    Log.i(TAG, name + ": recorded as baseline");
+                    return this;
+                }
+
+                String baselineP99 = baseline.getProperty(name + P99_NANOS_KEY);
+                if (baselineP99 == null) {
+                    return assertDefaults(defaultMaxP99Millis, defaultMaxAllocations);
+                }
+                long baselineAllocations = Long.parseLong(
+                        baseline.getProperty(name + ALLOCATIONS_KEY, "-1"));
+                double maxP99Millis = Long.parseLong(baselineP99) * MAX_P99_REGRESSION / 1000000.0;
+                long maxAllocations = baselineAllocations < 0 || allocations < 0 ? -1
+                        : (long) (baselineAllocations * MAX_ALLOCATION_REGRESSION)
+                        + ALLOCATION_SLACK;
+                return assertWithin(maxP99Millis, maxAllocations);
+            }
+        }
+
+        private Result assertDefaults(double maxP99Millis, long maxAllocations) {
+            Assert.assertTrue(name + " has neither a baseline nor a default threshold,"
+                            + " run connectedBenchmarkCalibrate first",
+                    maxP99Millis >= 0 || maxAllocations >= 0);
+            Log.i(TAG, name + ": no baseline, checking the default thresholds");
+            return assertWithin(maxP99Millis, maxAllocations);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: p50 %.3f ms, p99 %.3f ms, %d allocations (%d B)",
+                    name, p50Millis(), p99Millis(), allocations, allocatedBytes);
+        }
+    }
+
+    private static Properties loadBaseline(File file) throws IOException {
+        Properties baseline = new Properties();
+        InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return baseline;
+        }
+        try {
+            baseline.load(in);
+        } finally {
+            in.close();
+        }
+        return baseline;
+    }
+
+    private static void saveBaseline(File file, Properties baseline) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            baseline.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    private Benchmark() {
+    } // No instances.
+}
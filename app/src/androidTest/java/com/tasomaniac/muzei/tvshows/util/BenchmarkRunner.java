@@ -0,0 +1,61 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.test.InstrumentationTestRunner;
+
+import java.io.File;
+
+/**
+ * Leaves {@link PerformanceTest}s out unless they are asked for with {@code -e annotation}, so
+ * {@code connectedAndroidTest} stays quick and only {@code connectedBenchmarkTest} runs them.
+ *
+ * <p> With {@code -e calibrate true}, as run by {@code connectedBenchmarkCalibrate}, benchmark
+ * results are recorded as the baseline of the device instead of being checked, see
+ * {@link Benchmark.Result#assertNoRegression}.
+ */
+public class BenchmarkRunner extends InstrumentationTestRunner {
+
+    private static final String ARGUMENT_ANNOTATION = "annotation";
+    private static final String ARGUMENT_NOT_ANNOTATION = "notAnnotation";
+    private static final String ARGUMENT_CALIBRATE = "calibrate";
+
+    /**
+     * In the files of the app under test, so it survives reinstalls of both APKs.
+     */
+    private static final String BASELINE_FILE = "benchmark_baseline.properties";
+
+    private static volatile BenchmarkRunner instance;
+
+    private boolean calibrating;
+
+    @Override
+    public void onCreate(Bundle arguments) {
+        if (arguments == null) {
+            arguments = new Bundle();
+        }
+        if (arguments.getString(ARGUMENT_ANNOTATION) == null) {
+            arguments.putString(ARGUMENT_NOT_ANNOTATION, PerformanceTest.class.getName());
+        }
+        calibrating = Boolean.parseBoolean(arguments.getString(ARGUMENT_CALIBRATE));
+        instance = this;
+        super.onCreate(arguments);
+    }
+
+    static boolean isCalibrating() {
+        BenchmarkRunner runner = instance;
+        return runner != null && runner.calibrating;
+    }
+
+    /**
+     * Returns the file holding the baseline, null if the tests are not run by this runner.
+     */
+    @Nullable
+    static File getBaselineFile() {
+        BenchmarkRunner runner = instance;
+        if (runner == null) {
+            return null;
+        }
+        return new File(runner.getTargetContext().getFilesDir(), BASELINE_FILE);
+    }
+}
@@ -0,0 +1,15 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks benchmarks. {@link BenchmarkRunner} leaves them out of {@code connectedAndroidTest}, they
+ * run with {@code connectedBenchmarkTest}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface PerformanceTest {
+}
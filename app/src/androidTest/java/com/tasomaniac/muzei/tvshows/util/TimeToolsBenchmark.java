@@ -0,0 +1,48 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.test.AndroidTestCase;
+import android.text.format.DateFormat;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Latency of byline formatting with the formatters cached by {@link TimeTools}, against creating
+ * them per call.
+ */
+@PerformanceTest
+public class TimeToolsBenchmark extends AndroidTestCase {
+
+    private static final int CALLS_PER_RUN = 1000;
+
+    private static final double DEFAULT_MAX_CACHED_MILLIS = 25;
+
+    private final Date date = new Date(1440000000000L);
+
+    public void testCachedFormattersAreFaster() throws Exception {
+        Benchmark.Result uncached = Benchmark.measure("byline uncached", 5, 50,
+                new Benchmark.Body() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < CALLS_PER_RUN; i++) {
+                            new SimpleDateFormat("E", Locale.getDefault()).format(date);
+                            DateFormat.getTimeFormat(getContext()).format(date);
+                        }
+                    }
+                });
+        Benchmark.Result cached = Benchmark.measure("byline cached", 5, 50,
+                new Benchmark.Body() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < CALLS_PER_RUN; i++) {
+                            TimeTools.formatToLocalDay(date);
+                            TimeTools.formatToLocalTime(getContext(), date);
+                        }
+                    }
+                });
+
+        cached.assertNoRegression(DEFAULT_MAX_CACHED_MILLIS, -1);
+        assertTrue(cached + " vs " + uncached, cached.p50Nanos < uncached.p50Nanos);
+    }
+}
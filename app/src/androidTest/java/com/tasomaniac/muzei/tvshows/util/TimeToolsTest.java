@@ -0,0 +1,80 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.test.AndroidTestCase;
+import android.text.format.DateFormat;
+import android.text.format.DateUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Byline formatting with cached formatters: allocating less than creating them per call and
+ * following the device settings once invalidated. Latency is measured by
+ * {@link TimeToolsBenchmark}.
+ */
+public class TimeToolsTest extends AndroidTestCase {
+
+    private static final int CALLS_PER_RUN = 1000;
+
+    private final Date date = new Date(1440000000000L);
+
+    public void testCachedFormattersAllocateLess() throws Exception {
+        Benchmark.Result uncached = Benchmark.measure("byline uncached", 2, 10,
+                new Benchmark.Body() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < CALLS_PER_RUN; i++) {
+                            new SimpleDateFormat("E", Locale.getDefault()).format(date);
+                            DateFormat.getTimeFormat(getContext()).format(date);
+                        }
+                    }
+                });
+        Benchmark.Result cached = Benchmark.measure("byline cached", 2, 10,
+                new Benchmark.Body() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < CALLS_PER_RUN; i++) {
+                            TimeTools.formatToLocalDay(date);
+                            TimeTools.formatToLocalTime(getContext(), date);
+                        }
+                    }
+                });
+
+        assertTrue(cached + " vs " + uncached, cached.allocations * 2 < uncached.allocations);
+    }
+
+    public void testDayAndTimeMatchesFormatters() {
+        long today = System.currentTimeMillis();
+        long later = today + 3 * DateUtils.DAY_IN_MILLIS;
+
+        for (int i = 0; i < 2; i++) {
+            // Cached on the second pass.
+            assertEquals(TimeTools.formatToLocalTime(getContext(), new Date(today)),
+                    TimeTools.formatToLocalDayAndTime(getContext(), today));
+            assertEquals(TimeTools.formatToLocalDay(new Date(later)) + " "
+                            + TimeTools.formatToLocalTime(getContext(), new Date(later)),
+                    TimeTools.formatToLocalDayAndTime(getContext(), later));
+        }
+    }
+
+    public void testInvalidatedFormattersFollowTimeZone() {
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            TimeTools.invalidateFormatters();
+            String utc = TimeTools.formatToLocalTime(getContext(), date);
+
+            TimeZone.setDefault(TimeZone.getTimeZone("GMT+05:00"));
+            assertEquals(utc, TimeTools.formatToLocalTime(getContext(), date));
+            TimeTools.invalidateFormatters();
+            assertFalse(utc.equals(TimeTools.formatToLocalTime(getContext(), date)));
+            assertFalse(TimeTools.formatToLocalDayAndTime(getContext(), date.getTime())
+                    .endsWith(utc));
+        } finally {
+            TimeZone.setDefault(timeZone);
+            TimeTools.invalidateFormatters();
+        }
+    }
+}
@@ -4,10 +4,17 @@ import android.app.Application;
 import android.content.Context;
 import android.util.Log;
 
-import com.crashlytics.android.Crashlytics;
+import com.tasomaniac.muzei.tvshows.util.PackageEventBus;
+import com.tasomaniac.muzei.tvshows.util.Spans;
+import com.tasomaniac.muzei.tvshows.util.TimeTools;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.inject.Inject;
+
+import dagger.Lazy;
 import hugo.weaving.DebugLog;
-import io.fabric.sdk.android.Fabric;
 import timber.log.Timber;
 
 /**
@@ -15,47 +22,142 @@ import timber.log.Timber;
  */
 public class App extends Application {
 
-    private AppComponent component;
+    @Inject Lazy<CrashReporter> crashReporter;
+    @Inject PackageEventBus packageEventBus;
+
+    private volatile AppComponent component;
+    private SeriesGuideChangeObserver changeObserver;
+    private boolean formattersWatched;
 
     @Override
     public void onCreate() {
         super.onCreate();
+        long start = Spans.start();
 
         if (BuildConfig.DEBUG) {
             Timber.plant(new Timber.DebugTree());
         } else {
-            Fabric.with(this, new Crashlytics());
-            Timber.plant(new CrashReportingTree());
+            // Not initialized here, background launches by Muzei publish first.
+            CrashReporter.initOnFirstActivity(this);
+            Timber.plant(new CrashReportingTree(this));
         }
-
-        buildComponentAndInject();
+        Spans.end(Spans.APP_INIT, start);
     }
 
     @DebugLog // Extracted for debugging.
     public void buildComponentAndInject() {
-        component = AppComponent.Initializer.init(this);
-        component.inject(this);
+        long start = Spans.start();
+        AppComponent built = AppComponent.Initializer.init(this);
+        built.inject(this);
+        // Published once injected, the logging tree reads the fields when it sees the graph.
+        component = built;
+        Spans.end(Spans.COMPONENT_BUILD, start);
     }
 
+    /**
+     * Builds the graph on first use, launches which never need it do not pay for it.
+     */
     public AppComponent component() {
+        if (component == null) {
+            synchronized (this) {
+                if (component == null) {
+                    buildComponentAndInject();
+                }
+            }
+        }
         return component;
     }
 
+    boolean isComponentBuilt() {
+        return component != null;
+    }
+
+    CrashReporter getCrashReporter() {
+        component();
+        return crashReporter.get();
+    }
+
+    /**
+     * Starts watching SeriesGuide for changes and the clock for formatter changes, once the art
+     * source is in use. Does nothing if already watching.
+     */
+    synchronized void startWatchingSeriesGuide() {
+        if (!formattersWatched) {
+            TimeTools.registerFormatterInvalidation(this);
+            formattersWatched = true;
+        }
+        if (changeObserver == null) {
+            component();
+            changeObserver = new SeriesGuideChangeObserver(this, packageEventBus);
+            changeObserver.register();
+        }
+    }
+
+    /**
+     * Stops watching SeriesGuide once the art source has no subscribers left.
+     */
+    synchronized void stopWatchingSeriesGuide() {
+        if (changeObserver != null) {
+            changeObserver.unregister();
+            changeObserver = null;
+        }
+    }
+
     public static App get(Context context) {
         return (App) context.getApplicationContext();
     }
 
-    /** A tree which logs important information for crash reporting. */
+    /**
+     * A tree which logs important information for crash reporting. It never builds the graph,
+     * logs before it is built are kept and reported along with the first one after.
+     */
     private static class CrashReportingTree extends Timber.Tree {
+        private static final int MAX_PENDING_LOGS = 20;
+
+        private final App app;
+        private final Deque<PendingLog> pendingLogs = new ArrayDeque<>();
+
+        CrashReportingTree(App app) {
+            this.app = app;
+        }
+
         @Override protected void log(int priority, String tag, String message, Throwable t) {
             if (priority == Log.VERBOSE || priority == Log.DEBUG) {
                 return;
             }
 
-            Crashlytics.log(priority, tag, message);
-            if (t != null && priority >= Log.WARN) {
-                Crashlytics.logException(t);
+            if (!app.isComponentBuilt()) {
+                synchronized (pendingLogs) {
+                    if (pendingLogs.size() == MAX_PENDING_LOGS) {
+                        pendingLogs.removeFirst();
+                    }
+                    pendingLogs.addLast(new PendingLog(priority, tag, message, t));
+                }
+                return;
+            }
+
+            CrashReporter crashReporter = app.crashReporter.get();
+            synchronized (pendingLogs) {
+                PendingLog pending;
+                while ((pending = pendingLogs.pollFirst()) != null) {
+                    crashReporter.log(pending.priority, pending.tag, pending.message, pending.t);
+                }
             }
+            crashReporter.log(priority, tag, message, t);
+        }
+    }
+
+    private static final class PendingLog {
+        final int priority;
+        final String tag;
+        final String message;
+        final Throwable t;
+
+        PendingLog(int priority, String tag, String message, Throwable t) {
+            this.priority = priority;
+            this.tag = tag;
+            this.message = message;
+            this.t = t;
         }
     }
 }
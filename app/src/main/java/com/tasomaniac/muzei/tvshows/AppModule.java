@@ -6,7 +6,13 @@ import android.content.pm.PackageManager;
 
 import com.google.android.gms.analytics.GoogleAnalytics;
 import com.google.android.gms.analytics.Tracker;
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
+import com.tasomaniac.muzei.tvshows.data.OnlyUnwatched;
+import com.tasomaniac.muzei.tvshows.data.ProviderHealth;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+import com.tasomaniac.muzei.tvshows.util.PackageEventBus;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import javax.inject.Singleton;
@@ -21,6 +27,8 @@ import dagger.Provides;
  */
 @Module
 final class AppModule {
+    private static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
+
     private final App app;
 
     AppModule(App app) {
@@ -39,18 +47,35 @@ final class AppModule {
         return app.getPackageManager();
     }
 
+    @Provides @Singleton PackageEventBus providePackageEventBus() {
+        return new PackageEventBus(app, MUZEI_PACKAGE, ProviderHealth.SERIESGUIDE_PACKAGE);
+    }
+
+    @Provides @Singleton CrashReporter provideCrashReporter() {
+        return new CrashReporter(app);
+    }
+
     @Provides @Singleton Analytics provideAnalytics() {
         if (BuildConfig.DEBUG) {
-            return new Analytics.DebugAnalytics();
+            return new BatchingAnalytics(new Analytics.DebugAnalytics());
         }
 
         GoogleAnalytics googleAnalytics = GoogleAnalytics.getInstance(app);
         Tracker tracker = googleAnalytics.newTracker(BuildConfig.ANALYTICS_KEY);
         tracker.setSessionTimeout(300); // ms? s? better be s.
-        return new Analytics.GoogleAnalytics(tracker);
+        return new BatchingAnalytics(new Analytics.GoogleAnalytics(tracker));
     }
 
     @Provides @Singleton Random provideRandom() {
         return new Random();
     }
+
+    @Provides @Singleton
+    CandidatePipeline provideCandidatePipeline(ContentResolver contentResolver,
+            EpisodeIndex episodeIndex, @OnlyUnwatched BooleanPreference onlyUnwatched) {
+        return new CandidatePipeline(Arrays.<CandidateSource>asList(
+                new EpisodeCandidateSource(episodeIndex, onlyUnwatched),
+                new MovieCandidateSource(episodeIndex, onlyUnwatched),
+                new ListItemCandidateSource(contentResolver, episodeIndex, onlyUnwatched)));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.support.annotation.NonNull;
+import android.text.format.DateUtils;
+
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+import com.tasomaniac.muzei.tvshows.util.AliasTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Picks artworks among all candidates at random, weighted by a score: favorites, listed and highly
+ * rated shows come up more often, so do episodes airing close to now and shows which were not
+ * shown for a while.
+ *
+ * <p> The scores go into an {@link AliasTable} once per candidate set, so every pick is constant
+ * time regardless of the number of candidates. Skipped and recently shown candidates are drawn
+ * like the others and set aside, so they do not need a table of their own.
+ */
+final class ArtworkSelector {
+
+    static final double FAVORITE_FACTOR = 3;
+
+    /**
+     * Ratings go from 1 to 10, unrated shows count as this.
+     */
+    static final int NEUTRAL_RATING = 5;
+
+    /**
+     * Candidates without a release time score like ones releasing this many days away.
+     */
+    static final int UNKNOWN_RELEASE_DAYS_AWAY = 7;
+
+    /**
+     * Shows shown within this long are less likely to come up again, the more recently the less.
+     */
+    static final long SHOWN_RECOVERY_MILLIS = 7 * DateUtils.DAY_IN_MILLIS;
+    static final double MIN_SHOWN_FACTOR = 0.05;
+
+    /**
+     * Picks are with replacement, so taken candidates are drawn again. Gives up after this many
+     * draws per requested artwork and takes the rest in order.
+     */
+    private static final int DRAWS_PER_PICK = 8;
+
+    private final List<Candidate> candidates = new ArrayList<>();
+
+    /**
+     * Score of the candidate at the same index in {@link #candidates}.
+     */
+    private double[] scores = new double[16];
+
+    /**
+     * Token to index in {@link #candidates}.
+     */
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    /**
+     * Built from {@link #scores} on the first pick, dropped when a candidate is added.
+     */
+    private AliasTable table;
+
+    /**
+     * Adds the candidate. Sources overlap, e.g. a listed show with a next episode, so of the
+     * candidates with the same token only the highest scoring one is kept.
+     */
+    void add(@NonNull Candidate candidate, long now) {
+        double score = score(candidate, now);
+        Integer index = indices.get(candidate.token);
+        if (index == null) {
+            int size = candidates.size();
+            if (size == scores.length) {
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            indices.put(candidate.token, size);
+            candidates.add(candidate);
+            scores[size] = score;
+        } else if (score > scores[index]) {
+            candidates.set(index, candidate);
+            scores[index] = score;
+        } else {
+            return;
+        }
+        table = null;
+    }
+
+    /**
+     * Adds all candidates, see {@link #add(Candidate, long)}.
+     */
+    void addAll(@NonNull List<Candidate> candidates, long now) {
+        for (Candidate candidate : candidates) {
+            add(candidate, now);
+        }
+    }
+
+    /**
+     * Returns up to {@code count} distinct candidates, none of them in {@code skippedTokens}.
+     * Candidates in the rotation history are only returned if there are not enough others, so
+     * small libraries still rotate.
+     */
+    @NonNull
+    List<Candidate> select(int count, @NonNull Set<String> skippedTokens,
+                           @NonNull RotationHistory history, @NonNull Random random) {
+        List<Candidate> selected = new ArrayList<>(count);
+        int size = candidates.size();
+        if (size == 0 || count <= 0) {
+            return selected;
+        }
+        if (table == null) {
+            table = new AliasTable(Arrays.copyOf(scores, size));
+        }
+
+        boolean[] taken = new boolean[size];
+        List<Candidate> recent = new ArrayList<>();
+        for (int draws = count * DRAWS_PER_PICK; draws > 0 && selected.size() < count; draws--) {
+            int index = table.next(random);
+            if (taken[index]) {
+                continue;
+            }
+            taken[index] = true;
+            Candidate candidate = candidates.get(index);
+            if (skippedTokens.contains(candidate.token)) {
+                continue;
+            }
+            if (history.contains(candidate.historyKey)) {
+                recent.add(candidate);
+            } else {
+                selected.add(candidate);
+            }
+        }
+
+        // Out of draws, the rest comes in order: others first, then the recently shown.
+        for (int i = 0; i < size && selected.size() < count; i++) {
+            Candidate candidate = candidates.get(i);
+            if (!taken[i] && !skippedTokens.contains(candidate.token)
+                    && !history.contains(candidate.historyKey)) {
+                taken[i] = true;
+                selected.add(candidate);
+            }
+        }
+        for (int i = 0; i < recent.size() && selected.size() < count; i++) {
+            selected.add(recent.get(i));
+        }
+        for (int i = 0; i < size && selected.size() < count; i++) {
+            Candidate candidate = candidates.get(i);
+            if (!taken[i] && !skippedTokens.contains(candidate.token)) {
+                taken[i] = true;
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Always positive, so every candidate can be drawn.
+     */
+    static double score(@NonNull Candidate candidate, long now) {
+        double score = candidate.boost;
+        if (candidate.favorite) {
+            score *= FAVORITE_FACTOR;
+        }
+
+        int rating = candidate.rating > 0 ? candidate.rating : NEUTRAL_RATING;
+        score *= (double) rating / NEUTRAL_RATING;
+
+        // Halves a day away from now, a third two days away and so on.
+        if (candidate.releaseTime > 0) {
+            double daysAway = Math.abs(candidate.releaseTime - now)
+                    / (double) DateUtils.DAY_IN_MILLIS;
+            score /= 1 + daysAway;
+        } else {
+            score /= 1 + UNKNOWN_RELEASE_DAYS_AWAY;
+        }
+
+        long lastShown = candidate.lastShownMillis;
+        if (lastShown > 0 && now - lastShown < SHOWN_RECOVERY_MILLIS) {
+            score *= Math.max(MIN_SHOWN_FACTOR,
+                    (double) (now - lastShown) / SHOWN_RECOVERY_MILLIS);
+        }
+        return score;
+    }
+}
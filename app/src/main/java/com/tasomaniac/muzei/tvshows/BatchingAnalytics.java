@@ -0,0 +1,142 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Analytics} which never blocks the caller: hits are put into a bounded queue and handed
+ * to the delegate in batches on a single background priority thread. Hits arriving while the
+ * queue is full are dropped and counted.
+ */
+final class BatchingAnalytics implements Analytics {
+
+    static final int CAPACITY = 1000;
+    static final int BATCH_SIZE = 50;
+
+    /**
+     * Hits sent close together are flushed together.
+     */
+    static final long FLUSH_DELAY_MILLIS = 1000;
+
+    private final Analytics delegate;
+    private final ScheduledExecutorService executor;
+
+    private final Queue<Hit> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            Hit hit;
+            int sent = 0;
+            while ((hit = queue.poll()) != null) {
+                size.decrementAndGet();
+                hit.sendTo(delegate);
+                if (++sent == BATCH_SIZE) {
+                    // Let anything else on the executor run in between batches.
+                    scheduleFlush(0);
+                    return;
+                }
+            }
+        }
+    };
+
+    BatchingAnalytics(@NonNull Analytics delegate) {
+        this(delegate, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "Analytics");
+            }
+        }));
+    }
+
+    BatchingAnalytics(@NonNull Analytics delegate, @NonNull ScheduledExecutorService executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public void sendScreenView(String screenName) {
+        enqueue(new Hit(screenName, null, null, null, 0));
+    }
+
+    @Override
+    public void sendEvent(String category, String action, String label, long value) {
+        enqueue(new Hit(null, category, action, label, value));
+    }
+
+    @Override
+    public void sendEvent(String category, String action, String label) {
+        sendEvent(category, action, label, 0);
+    }
+
+    /**
+     * Returns the number of hits dropped because the queue was full.
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void enqueue(Hit hit) {
+        // Reserve a slot first, so the queue never grows past its capacity.
+        if (size.incrementAndGet() > CAPACITY) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(hit);
+        scheduleFlush(FLUSH_DELAY_MILLIS);
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A screen view if {@link #screenName} is set, an event otherwise.
+     */
+    private static final class Hit {
+        final String screenName;
+        final String category;
+        final String action;
+        final String label;
+        final long value;
+
+        Hit(String screenName, String category, String action, String label, long value) {
+            this.screenName = screenName;
+            this.category = category;
+            this.action = action;
+            this.label = label;
+            this.value = value;
+        }
+
+        void sendTo(Analytics analytics) {
+            if (screenName != null) {
+                analytics.sendScreenView(screenName);
+            } else {
+                analytics.sendEvent(category, action, label, value);
+            }
+        }
+    }
+}
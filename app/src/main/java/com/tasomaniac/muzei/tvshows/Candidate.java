@@ -0,0 +1,65 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+
+/**
+ * An artwork which can be published, as collected by a {@link CandidateSource}.
+ */
+final class Candidate {
+
+    /**
+     * Tokens of episode artworks are the plain episode id, other artworks carry a prefix.
+     */
+    static final String SHOW_TOKEN_PREFIX = "show/";
+    static final String MOVIE_TOKEN_PREFIX = "movie/";
+
+    final String token;
+
+    /**
+     * Key of the artwork in the {@link RotationHistory}.
+     */
+    final long historyKey;
+
+    final String title;
+
+    /**
+     * Shown in the byline after the release time, e.g. the network.
+     */
+    final String subtitle;
+
+    /**
+     * Poster path in the poster cache, or an absolute URL.
+     */
+    final String posterPath;
+
+    /**
+     * Release time used for scoring, 0 if unknown.
+     */
+    final long releaseTime;
+
+    /**
+     * Whether the byline starts with the release day and time.
+     */
+    final boolean showReleaseTime;
+
+    // Scoring, see ArtworkSelector.
+    boolean favorite;
+    int rating;
+    long lastShownMillis;
+    double boost = 1;
+
+    Candidate(@NonNull String token, long historyKey, @Nullable String title,
+              @Nullable String subtitle, @Nullable String posterPath, long releaseTime,
+              boolean showReleaseTime) {
+        this.token = token;
+        this.historyKey = historyKey;
+        this.title = title;
+        this.subtitle = subtitle;
+        this.posterPath = posterPath;
+        this.releaseTime = releaseTime;
+        this.showReleaseTime = showReleaseTime;
+    }
+}
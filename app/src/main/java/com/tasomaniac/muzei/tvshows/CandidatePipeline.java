@@ -0,0 +1,91 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Loads all {@link CandidateSource}s concurrently, so collecting candidates takes as long as the
+ * slowest source instead of the sum of all of them. A failing or slow source is left out, the
+ * others still deliver.
+ */
+final class CandidatePipeline {
+
+    static final long TIMEOUT_MILLIS = 10 * 1000;
+
+    private final List<CandidateSource> sources;
+    private final ExecutorService executor;
+
+    CandidatePipeline(@NonNull List<CandidateSource> sources) {
+        this(sources, Executors.newFixedThreadPool(sources.size(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "CandidateSource-" + count.incrementAndGet());
+            }
+        }));
+    }
+
+    CandidatePipeline(@NonNull List<CandidateSource> sources, @NonNull ExecutorService executor) {
+        this.sources = sources;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the candidates of all sources which loaded in time. Blocks, call it off the main
+     * thread.
+     */
+    @NonNull
+    List<Candidate> load(final long now) {
+        List<Future<List<Candidate>>> futures = new ArrayList<>(sources.size());
+        for (final CandidateSource source : sources) {
+            futures.add(executor.submit(new Callable<List<Candidate>>() {
+                @Override
+                public List<Candidate> call() {
+                    return source.load(now);
+                }
+            }));
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        for (int i = 0; i < futures.size(); i++) {
+            Future<List<Candidate>> future = futures.get(i);
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                candidates.addAll(future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (ExecutionException e) {
+                Timber.w(e.getCause(), "Error loading candidates of %s",
+                        sources.get(i).getClass().getSimpleName());
+            } catch (TimeoutException e) {
+                Timber.w("Timed out loading candidates of %s",
+                        sources.get(i).getClass().getSimpleName());
+                future.cancel(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,20 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * One kind of artwork the art source can publish. Sources are loaded concurrently by
+ * {@link CandidatePipeline}, so they must not share mutable state.
+ */
+interface CandidateSource {
+
+    /**
+     * Collects the current candidates. Called on a background thread.
+     *
+     * @throws RuntimeException if the source is not available, e.g. SeriesGuide is missing.
+     */
+    @NonNull
+    List<Candidate> load(long now);
+}
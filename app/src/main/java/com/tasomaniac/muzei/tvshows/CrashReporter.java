@@ -0,0 +1,93 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.crashlytics.android.Crashlytics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.fabric.sdk.android.Fabric;
+
+/**
+ * Crash reporting which is initialized when it is first needed instead of in
+ * {@link App#onCreate()}: when an activity is created, when something worth reporting is logged
+ * or once a background update has published its artwork. Processes started only by Muzei to
+ * rotate the artwork publish before Fabric starts up.
+ */
+final class CrashReporter {
+
+    private final Application app;
+    private final AtomicBoolean initialized = new AtomicBoolean();
+
+    CrashReporter(Application app) {
+        this.app = app;
+    }
+
+    void init() {
+        if (BuildConfig.DEBUG) {
+            return;
+        }
+        if (initialized.compareAndSet(false, true)) {
+            Fabric.with(app, new Crashlytics());
+        }
+    }
+
+    boolean isInitialized() {
+        return initialized.get();
+    }
+
+    /**
+     * Initializes crash reporting as soon as the app is launched into the foreground. Neither
+     * the reporter nor the graph providing it are created before.
+     */
+    static void initOnFirstActivity(final App app) {
+        app.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                app.unregisterActivityLifecycleCallbacks(this);
+                app.getCrashReporter().init();
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+            }
+        });
+    }
+
+    /**
+     * Warnings and errors initialize crash reporting, anything less is dropped until it is.
+     */
+    void log(int priority, String tag, String message, Throwable t) {
+        if (priority < Log.WARN && !initialized.get()) {
+            return;
+        }
+        init();
+        Crashlytics.log(priority, tag, message);
+        if (t != null && priority >= Log.WARN) {
+            Crashlytics.logException(t);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.support.annotation.NonNull;
+import android.text.format.DateUtils;
+
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upcoming episodes, recently released episodes and shows with a next episode, read from the
+ * {@link EpisodeIndex} without touching the provider.
+ */
+final class EpisodeCandidateSource implements CandidateSource {
+
+    /**
+     * Maximum number of episodes per time range.
+     */
+    static final int CANDIDATE_LIMIT = 1000;
+
+    private final EpisodeIndex episodeIndex;
+    private final BooleanPreference onlyUnwatched;
+
+    EpisodeCandidateSource(@NonNull EpisodeIndex episodeIndex,
+                           @NonNull BooleanPreference onlyUnwatched) {
+        this.episodeIndex = episodeIndex;
+        this.onlyUnwatched = onlyUnwatched;
+    }
+
+    @NonNull
+    @Override
+    public List<Candidate> load(long now) {
+        // go an hour back in time, so episodes move to recent one hour late
+        long recentThreshold = now - DateUtils.HOUR_IN_MILLIS;
+        long timeThreshold = recentThreshold + DateUtils.DAY_IN_MILLIS;
+        long recentSince = recentThreshold - SeriesGuideArtSource.RECENT_TIME_MILLIS;
+
+        boolean isOnlyUnwatched = onlyUnwatched.get();
+        List<Candidate> candidates = new ArrayList<>();
+        addEpisodes(candidates, episodeIndex.findEpisodes(
+                recentThreshold, timeThreshold, isOnlyUnwatched, false, CANDIDATE_LIMIT));
+        addEpisodes(candidates, episodeIndex.findEpisodes(
+                recentSince, recentThreshold, isOnlyUnwatched, true, CANDIDATE_LIMIT));
+        for (EpisodeIndex.Show show : episodeIndex.findShowsWithNextEpisode(CANDIDATE_LIMIT)) {
+            candidates.add(newCandidate(Candidate.SHOW_TOKEN_PREFIX + show.getId(),
+                    RotationHistory.showKey(show.getId()), show, show.getNextReleaseTime()));
+        }
+        return candidates;
+    }
+
+    private void addEpisodes(List<Candidate> candidates, List<EpisodeIndex.Episode> episodes) {
+        for (EpisodeIndex.Episode episode : episodes) {
+            EpisodeIndex.Show show = episodeIndex.getShow(episode.getShowId());
+            if (show != null) {
+                candidates.add(newCandidate(String.valueOf(episode.getId()),
+                        RotationHistory.episodeKey(episode.getId()), show,
+                        episode.getReleaseTime()));
+            }
+        }
+    }
+
+    private static Candidate newCandidate(String token, long historyKey, EpisodeIndex.Show show,
+                                          long releaseTime) {
+        Candidate candidate = new Candidate(token, historyKey, show.getTitle(), show.getNetwork(),
+                show.getPoster(), releaseTime, releaseTime > 0);
+        candidate.favorite = show.isFavorite();
+        candidate.rating = show.getRating();
+        candidate.lastShownMillis = show.getLastShownMillis();
+        return candidate;
+    }
+}
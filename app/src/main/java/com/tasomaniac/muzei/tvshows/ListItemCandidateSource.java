@@ -0,0 +1,119 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.ListItemTypes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.ListItems;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows and episodes the user put on a SeriesGuide list. Only the references are queried, the
+ * details come from the {@link EpisodeIndex}, listed episodes with a single query.
+ */
+final class ListItemCandidateSource implements CandidateSource {
+
+    /**
+     * Listed items were picked by the user, so they come up more often.
+     */
+    static final double LIST_BOOST = 2;
+
+    interface ListItemQuery {
+
+        String[] PROJECTION = new String[]{
+                ListItems.ITEM_REF_ID,
+                ListItems.TYPE
+        };
+
+        String SELECTION = ListItems.SELECTION_SHOWS + " OR " + ListItems.SELECTION_EPISODES;
+
+        int ITEM_REF_ID = 0;
+        int TYPE = 1;
+    }
+
+    private final ContentResolver contentResolver;
+    private final EpisodeIndex episodeIndex;
+    private final BooleanPreference onlyUnwatched;
+
+    ListItemCandidateSource(@NonNull ContentResolver contentResolver,
+                            @NonNull EpisodeIndex episodeIndex,
+                            @NonNull BooleanPreference onlyUnwatched) {
+        this.contentResolver = contentResolver;
+        this.episodeIndex = episodeIndex;
+        this.onlyUnwatched = onlyUnwatched;
+    }
+
+    @NonNull
+    @Override
+    public List<Candidate> load(long now) {
+        Cursor cursor = contentResolver.query(ListItems.CONTENT_URI, ListItemQuery.PROJECTION,
+                ListItemQuery.SELECTION, null, null);
+        if (cursor == null) {
+            throw new IllegalArgumentException("Series Guide lists are not available");
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        List<Integer> episodeIds = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                int id = parseId(cursor.getString(ListItemQuery.ITEM_REF_ID));
+                if (cursor.getInt(ListItemQuery.TYPE) == ListItemTypes.SHOW) {
+                    addShow(candidates, id);
+                } else if (id >= 0) {
+                    episodeIds.add(id);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // Only episodes still in the index qualify, older ones have no artwork worth showing.
+        for (EpisodeIndex.Episode episode
+                : episodeIndex.getEpisodes(episodeIds, onlyUnwatched.get())) {
+            addEpisode(candidates, episode);
+        }
+        return candidates;
+    }
+
+    private void addShow(List<Candidate> candidates, int showId) {
+        EpisodeIndex.Show show = episodeIndex.getShow(showId);
+        if (show != null && !show.isHidden()) {
+            candidates.add(newCandidate(Candidate.SHOW_TOKEN_PREFIX + showId,
+                    RotationHistory.showKey(showId), show, show.getNextReleaseTime()));
+        }
+    }
+
+    private void addEpisode(List<Candidate> candidates, EpisodeIndex.Episode episode) {
+        EpisodeIndex.Show show = episodeIndex.getShow(episode.getShowId());
+        if (show != null && !show.isHidden()) {
+            int episodeId = episode.getId();
+            candidates.add(newCandidate(String.valueOf(episodeId),
+                    RotationHistory.episodeKey(episodeId), show, episode.getReleaseTime()));
+        }
+    }
+
+    private static Candidate newCandidate(String token, long historyKey, EpisodeIndex.Show show,
+                                          long releaseTime) {
+        Candidate candidate = new Candidate(token, historyKey, show.getTitle(), show.getNetwork(),
+                show.getPoster(), releaseTime, releaseTime > 0);
+        candidate.favorite = show.isFavorite();
+        candidate.rating = show.getRating();
+        candidate.lastShownMillis = show.getLastShownMillis();
+        candidate.boost = LIST_BOOST;
+        return candidate;
+    }
+
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
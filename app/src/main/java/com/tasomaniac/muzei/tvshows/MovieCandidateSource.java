@@ -0,0 +1,72 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import com.tasomaniac.muzei.tvshows.data.CursorMapper;
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
+import com.tasomaniac.muzei.tvshows.data.MovieRow;
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Movies on the SeriesGuide watchlist, read from the {@link EpisodeIndex} mirror.
+ */
+final class MovieCandidateSource implements CandidateSource {
+
+    /**
+     * SeriesGuide stores TMDb poster paths, which are relative to this.
+     */
+    static final String POSTER_BASE_URL = "https://image.tmdb.org/t/p/w780";
+
+    private final EpisodeIndex episodeIndex;
+    private final BooleanPreference onlyUnwatched;
+
+    MovieCandidateSource(@NonNull EpisodeIndex episodeIndex,
+                         @NonNull BooleanPreference onlyUnwatched) {
+        this.episodeIndex = episodeIndex;
+        this.onlyUnwatched = onlyUnwatched;
+    }
+
+    @NonNull
+    @Override
+    public List<Candidate> load(final long now) {
+        final List<Candidate> candidates = new ArrayList<>();
+        final Calendar calendar = Calendar.getInstance();
+        episodeIndex.forEachWatchlistMovie(onlyUnwatched.get(),
+                new CursorMapper.Visitor<MovieRow>() {
+                    @Override
+                    public boolean visit(@NonNull MovieRow row) {
+                        if (TextUtils.isEmpty(row.poster)) {
+                            return true;
+                        }
+                        long released = row.releasedMillis;
+
+                        // release year, e.g. '2015'
+                        String year = null;
+                        if (released > 0) {
+                            calendar.setTimeInMillis(released);
+                            year = String.valueOf(calendar.get(Calendar.YEAR));
+                        }
+                        // Only releases around now count as recent, older movies score like shows
+                        // without a known next episode.
+                        boolean isRecent = Math.abs(now - released)
+                                < SeriesGuideArtSource.RECENT_TIME_MILLIS;
+                        long releaseTime = isRecent ? released : 0;
+
+                        Candidate candidate = new Candidate(
+                                Candidate.MOVIE_TOKEN_PREFIX + row.tmdbId,
+                                RotationHistory.movieKey(row.tmdbId), row.title, year,
+                                POSTER_BASE_URL + row.poster, releaseTime, false);
+                        candidate.rating = row.rating;
+                        candidates.add(candidate);
+                        return true;
+                    }
+                });
+        return candidates;
+    }
+}
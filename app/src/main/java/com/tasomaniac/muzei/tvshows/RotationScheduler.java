@@ -0,0 +1,61 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.text.format.DateUtils;
+
+import java.util.Calendar;
+
+/**
+ * Picks the next instant worth rotating the artwork at, instead of a fixed interval: when an
+ * episode becomes recent, when the day changes and bylines saying "today" or a week day go stale,
+ * or when the rotation interval is over, whichever comes first.
+ *
+ * <p> Only the end of the rotation interval always rotates. The other wakeups only check whether
+ * the current artwork is still a candidate, see {@link #isRotationDue}.
+ */
+final class RotationScheduler {
+
+    /**
+     * Events closer together than this are coalesced into one update.
+     */
+    static final long MIN_UPDATE_INTERVAL_MILLIS = 15 * DateUtils.MINUTE_IN_MILLIS;
+
+    private final long rotateIntervalMillis;
+
+    RotationScheduler(long rotateIntervalMillis) {
+        this.rotateIntervalMillis = rotateIntervalMillis;
+    }
+
+    /**
+     * @param nextRecentMillis When the next episode becomes a recent one, 0 if none does.
+     */
+    long getNextUpdateMillis(long now, long nextRecentMillis) {
+        long next = Math.min(now + rotateIntervalMillis, getNextMidnight(now));
+        if (nextRecentMillis > now) {
+            next = Math.min(next, nextRecentMillis);
+        }
+        return Math.max(next, now + MIN_UPDATE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Returns whether the rotation interval is over, so a scheduled update publishes a new artwork
+     * even if the current one is still a candidate. Updates coalesced into the end of the interval
+     * by {@link #MIN_UPDATE_INTERVAL_MILLIS} count as over.
+     *
+     * @param lastRotationMillis When the current artwork was published, 0 if unknown.
+     */
+    boolean isRotationDue(long now, long lastRotationMillis) {
+        return lastRotationMillis <= 0 || lastRotationMillis > now
+                || now - lastRotationMillis >= rotateIntervalMillis - MIN_UPDATE_INTERVAL_MILLIS;
+    }
+
+    private static long getNextMidnight(long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -1,78 +1,79 @@
 package com.tasomaniac.muzei.tvshows;
 
-import android.content.ContentResolver;
+import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.RemoteMuzeiArtSource;
+import com.tasomaniac.muzei.tvshows.data.ArtworkQueue;
+import com.tasomaniac.muzei.tvshows.data.EpisodeIndex;
 import com.tasomaniac.muzei.tvshows.data.OnlyUnwatched;
+import com.tasomaniac.muzei.tvshows.data.PosterCache;
+import com.tasomaniac.muzei.tvshows.data.ProviderHealth;
+import com.tasomaniac.muzei.tvshows.data.RotationHistory;
 import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
-import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+import com.tasomaniac.muzei.tvshows.util.Spans;
 import com.tasomaniac.muzei.tvshows.util.TimeTools;
 
-import java.util.Calendar;
-import java.util.Date;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import javax.inject.Inject;
 
+import dagger.Lazy;
+
 public class SeriesGuideArtSource extends RemoteMuzeiArtSource {
     private static final String SOURCE_NAME = "SeriesGuideArtSource";
 
+    /**
+     * Syncs the episode index and replaces the current artwork if it is no longer a candidate.
+     * Sent by {@link SeriesGuideChangeObserver} when SeriesGuide data changes.
+     */
+    static final String ACTION_REFRESH = "com.tasomaniac.muzei.tvshows.action.REFRESH";
+
+    private static final int NO_ID = -1;
+
+    private static final String PREF_LAST_ROTATION_MILLIS = "last_rotation_millis";
+
+    private static final String ANALYTICS_CATEGORY = "Artwork";
+    private static final String ANALYTICS_ACTION_PUBLISH = "Publish";
+
+    static final long RECENT_TIME_MILLIS = 7 * DateUtils.DAY_IN_MILLIS;
+
+    /**
+     * Number of artworks built ahead of time, and the size below which the queue is refilled.
+     */
+    private static final int QUEUE_SIZE = 10;
+    private static final int QUEUE_LOW_WATERMARK = 3;
+
     private static final int ROTATE_TIME_MILLIS = 24 * 60 * 60 * 1000; // rotate every 24 hours
-    private static final int NEXT_ON_ERROR_TIME_MILLIS = 60 * 60 * 1000; // rotate every 24 hours
-
-    public interface EpisodeQuery {
-
-        String[] PROJECTION = new String[]{
-                "episodes" + "." + Episodes._ID,
-                Episodes.TITLE,
-                Episodes.NUMBER,
-                Episodes.SEASON,
-                Episodes.FIRSTAIREDMS,
-                Episodes.WATCHED,
-                Episodes.COLLECTED,
-                Shows.REF_SHOW_ID,
-                Shows.TITLE,
-                Shows.NETWORK,
-                Shows.POSTER
-        };
-
-        String QUERY_UPCOMING = Episodes.FIRSTAIREDMS + ">=? AND " + Episodes.FIRSTAIREDMS
-                + "<? AND " + Shows.SELECTION_NO_HIDDEN;
-
-        String QUERY_RECENT = Episodes.FIRSTAIREDMS + "<? AND " + Episodes.FIRSTAIREDMS + ">? AND "
-                + Shows.SELECTION_NO_HIDDEN;
-
-        String SORTING_UPCOMING = Episodes.FIRSTAIREDMS + " ASC," + Shows.TITLE + " ASC,"
-                + Episodes.NUMBER + " ASC";
-
-        String SORTING_RECENT = Episodes.FIRSTAIREDMS + " DESC," + Shows.TITLE + " ASC,"
-                + Episodes.NUMBER + " DESC";
-
-        int _ID = 0;
-        int TITLE = 1;
-        int NUMBER = 2;
-        int SEASON = 3;
-        int RELEASE_TIME_MS = 4;
-        int WATCHED = 5;
-        int COLLECTED = 6;
-        int SHOW_ID = 7;
-        int SHOW_TITLE = 8;
-        int SHOW_NETWORK = 9;
-        int SHOW_POSTER = 10;
-    }
-
-    @Inject Random random;
-    @Inject Analytics analytics;
-    @Inject ContentResolver contentResolver;
-
-    @Inject @OnlyUnwatched Boolean isOnlyUnwatched;
+    private static final int NEXT_ON_ERROR_TIME_MILLIS = 60 * 60 * 1000; // try again in an hour
+
+    private final RotationScheduler scheduler = new RotationScheduler(ROTATE_TIME_MILLIS);
+
+    // Not needed to publish, so a background update does not wait for them to be created.
+    @Inject Lazy<Random> random;
+    @Inject Lazy<Analytics> analytics;
+    @Inject Lazy<CrashReporter> crashReporter;
+    @Inject EpisodeIndex episodeIndex;
+    @Inject PosterCache posterCache;
+    @Inject ArtworkQueue artworkQueue;
+    @Inject RotationHistory rotationHistory;
+    @Inject CandidatePipeline candidatePipeline;
+    @Inject ProviderHealth providerHealth;
+
+    // Read at update time, the service outlives changes of the setting.
+    @Inject @OnlyUnwatched BooleanPreference onlyUnwatched;
 
     public SeriesGuideArtSource() {
         super(SOURCE_NAME);
@@ -83,103 +84,314 @@ public class SeriesGuideArtSource extends RemoteMuzeiArtSource {
         super.onCreate();
         App.get(this).component().inject(this);
         setUserCommands(BUILTIN_COMMAND_ID_NEXT_ARTWORK);
+        if (isEnabled()) {
+            // Not on app start, only processes the source is used in watch SeriesGuide.
+            App.get(this).startWatchingSeriesGuide();
+        }
+    }
+
+    @Override
+    protected void onEnabled() {
+        super.onEnabled();
+        App.get(this).startWatchingSeriesGuide();
+    }
+
+    @Override
+    protected void onDisabled() {
+        super.onDisabled();
+        App.get(this).stopWatchingSeriesGuide();
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent != null && ACTION_REFRESH.equals(intent.getAction())) {
+            onRefresh();
+            return;
+        }
+        super.onHandleIntent(intent);
+    }
+
+    /**
+     * Prints the recorded {@link Spans}:
+     * {@code adb shell dumpsys activity service com.tasomaniac.muzei.tvshows/.SeriesGuideArtSource}
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        Spans.dump(writer);
+    }
+
+    private void onRefresh() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        if (!episodeIndex.sync()) {
+            // The scheduled update retries.
+            return;
+        }
+        // Queued artworks were built from the old data.
+        artworkQueue.clear();
+        if (!isCandidate(getCurrentToken())) {
+            try {
+                publishNextArtwork();
+            } catch (RetryException ignored) {
+                // Just synced, the scheduled update retries.
+            }
+        }
+        refillQueueIfNeeded();
+        scheduleNextUpdate();
     }
 
     @Override
     protected void onTryUpdate(int reason) throws RetryException {
+        if (!providerHealth.isAvailable(Episodes.CONTENT_URI)) {
+            // Series Guide is missing, too old or crashing, Muzei retries with backoff.
+            throw new RetryException();
+        }
+        if (reason == UPDATE_REASON_SCHEDULED && !isRotationDue()) {
+            // Woken up by a release or a new day, the artwork only changes if it has to.
+            episodeIndex.syncIfStale();
+            if (isCandidate(getCurrentToken())) {
+                scheduleNextUpdate();
+                return;
+            }
+        }
+        if (!publishNextArtwork()) {
+            // Synced fine but the library is empty, check again later.
+            scheduleUpdate(System.currentTimeMillis() + NEXT_ON_ERROR_TIME_MILLIS);
+            return;
+        }
+        // Published, crash reporting may start up now.
+        crashReporter.get().init();
+        refillQueueIfNeeded();
+        scheduleNextUpdate();
+    }
+
+    private boolean isRotationDue() {
+        long lastRotation = getSharedPreferences().getLong(PREF_LAST_ROTATION_MILLIS, 0);
+        return scheduler.isRotationDue(System.currentTimeMillis(), lastRotation);
+    }
+
+    /**
+     * Schedules the next rotation for when the artworks change: an episode becoming recent, a new
+     * day or the end of the rotation interval.
+     */
+    private void scheduleNextUpdate() {
+        long now = System.currentTimeMillis();
+        // episodes move to recent one hour late
+        long nextRelease = episodeIndex.findNextReleaseTime(now - DateUtils.HOUR_IN_MILLIS,
+                onlyUnwatched.get());
+        long nextRecent = nextRelease > 0 ? nextRelease + DateUtils.HOUR_IN_MILLIS : 0;
+        scheduleUpdate(scheduler.getNextUpdateMillis(now, nextRecent));
+    }
 
-        //TODO Check if the user have Series Guide installed.
-        //TODO Check if the user has Series Guide Content Provider setted up.
-        onTryUpcomingEpisodesUpdate();
-
-
-        scheduleUpdate(System.currentTimeMillis() + ROTATE_TIME_MILLIS);
-    }
-
-    private void onTryUpcomingEpisodesUpdate() {
-        // go an hour back in time, so episodes move to recent one hour late
-        long recentThreshold = System.currentTimeMillis() - DateUtils.HOUR_IN_MILLIS;
-        long timeThreshold = recentThreshold + DateUtils.DAY_IN_MILLIS;
-
-        StringBuilder query = new StringBuilder(EpisodeQuery.QUERY_UPCOMING);
-        String sortOrder = EpisodeQuery.SORTING_UPCOMING;
-        String[] selectionArgs = new String[]{
-                String.valueOf(recentThreshold), String.valueOf(timeThreshold)
-        };
-
-        // append unwatched selection if necessary
-        if (isOnlyUnwatched) {
-            query.append(" AND ").append(Episodes.SELECTION_UNWATCHED);
-        }
-
-        final Cursor upcomingEpisodes =
-                contentResolver.query(Episodes.CONTENT_URI_WITHSHOW,
-                        EpisodeQuery.PROJECTION,
-                        query.toString(), selectionArgs, sortOrder);
-
-        // Ensure there are episodes to show
-        // TODO make the user to install SeriesGuide, setup and have some shows in it.
-        if (upcomingEpisodes != null) {
-            while (upcomingEpisodes.moveToNext()) {
-
-                String currentToken = (getCurrentArtwork() != null) ?
-                        getCurrentArtwork().getToken() : null;
-                String upcomingToken = upcomingEpisodes.getString(EpisodeQuery._ID);
-
-                if (upcomingToken.equals(currentToken)) {
-                    continue;
-                }
-
-                // Ensure those episodes are within the user set time frame
-                long releaseTime = upcomingEpisodes
-                        .getLong(EpisodeQuery.RELEASE_TIME_MS);
-
-                // title of first show
-                final String title = upcomingEpisodes.getString(EpisodeQuery.SHOW_TITLE);
-
-                // get the actual release time
-                Calendar dateTime = Calendar.getInstance();
-                dateTime.setTimeInMillis(releaseTime);
-                Date actualRelease = dateTime.getTime();
-                String absoluteTime = TimeTools.formatToLocalTime(this, actualRelease);
-                String releaseDay = TimeTools.formatToLocalDay(actualRelease);
-
-                // time and network, e.g. 'Mon 10:00, Network'
-                StringBuilder byline = new StringBuilder();
-                if (!DateUtils.isToday(releaseTime)) {
-                    byline.append(releaseDay).append(" ");
-                }
-                byline.append(absoluteTime);
-                final String network = upcomingEpisodes
-                        .getString(EpisodeQuery.SHOW_NETWORK);
-                if (!TextUtils.isEmpty(network)) {
-                    byline.append(" — ").append(network);
-                }
-
-                publishArtwork(new Artwork.Builder()
-                        .title(title)
-                        .byline(byline.toString())
-                        .imageUri(getPosterImageUri(upcomingEpisodes))
-                        .token(upcomingToken)
-                        .viewIntent(getViewIntent())
-                        .build());
-
-                break;
+    /**
+     * Publishes the next queued artwork. Only touches the provider when nothing valid is queued.
+     *
+     * @return false if there was nothing to publish.
+     * @throws RetryException if SeriesGuide could not be queried, so the update is retried with
+     *                        exponential backoff.
+     */
+    private boolean publishNextArtwork() throws RetryException {
+        if (artworkQueue.size() > 0 && !DateUtils.isToday(artworkQueue.getBuiltAtMillis())) {
+            // Bylines say "today" or a week day, they are only valid on the day they are built.
+            artworkQueue.clear();
+        }
+
+        String currentToken = getCurrentToken();
+        ArtworkQueue.Entry entry = pollValidEntry(currentToken);
+        if (entry == null) {
+            if (!episodeIndex.syncIfStale()) {
+                throw new RetryException();
             }
-            upcomingEpisodes.close();
+            refillQueue(currentToken);
+            entry = pollValidEntry(currentToken);
+        }
+        if (entry == null) {
+            // Ensure there are episodes to show
+            // TODO make the user to install SeriesGuide, setup and have some shows in it.
+            return false;
+        }
+
+        long start = Spans.start();
+        publishArtwork(buildArtwork(entry, posterCache.getUri(entry.getPosterPath())));
+        Spans.end(Spans.PUBLISH_ARTWORK, start);
+        getSharedPreferences().edit()
+                .putLong(PREF_LAST_ROTATION_MILLIS, System.currentTimeMillis())
+                .apply();
+
+        markShown(entry.getToken());
+        // Batched, sending does not hold up the update.
+        analytics.get().sendEvent(ANALYTICS_CATEGORY, ANALYTICS_ACTION_PUBLISH,
+                getArtworkType(entry.getToken()));
+        return true;
+    }
+
+    private void markShown(String token) {
+        if (token.startsWith(Candidate.MOVIE_TOKEN_PREFIX)) {
+            int tmdbId = parseId(token.substring(Candidate.MOVIE_TOKEN_PREFIX.length()));
+            rotationHistory.add(RotationHistory.movieKey(tmdbId));
+            return;
+        }
+        int showId = getShowId(token);
+        if (showId == NO_ID) {
+            int episodeId = getEpisodeId(token);
+            rotationHistory.add(RotationHistory.episodeKey(episodeId));
+            EpisodeIndex.Episode episode = episodeIndex.getEpisode(episodeId);
+            showId = episode != null ? episode.getShowId() : NO_ID;
+        } else {
+            rotationHistory.add(RotationHistory.showKey(showId));
+        }
+        if (showId != NO_ID) {
+            episodeIndex.markShown(showId, System.currentTimeMillis());
         }
     }
 
+    @Nullable
+    private ArtworkQueue.Entry pollValidEntry(@Nullable String currentToken) {
+        ArtworkQueue.Entry entry;
+        while ((entry = artworkQueue.poll()) != null) {
+            if (!entry.getToken().equals(currentToken) && isCandidate(entry.getToken())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void refillQueueIfNeeded() {
+        if (artworkQueue.size() < QUEUE_LOW_WATERMARK) {
+            episodeIndex.syncIfStale();
+            refillQueue(getCurrentToken());
+        }
+    }
+
+    /**
+     * Tops the queue up to {@link #QUEUE_SIZE} artworks, picked by {@link ArtworkSelector} among
+     * the candidates of all sources. Posters of the new entries are prefetched into the cache in
+     * the background.
+     */
+    private void refillQueue(@Nullable String currentToken) {
+        Set<String> skippedTokens = artworkQueue.getTokens();
+        if (currentToken != null) {
+            skippedTokens.add(currentToken);
+        }
+        int needed = QUEUE_SIZE - skippedTokens.size();
+        if (needed <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        ArtworkSelector selector = new ArtworkSelector();
+        selector.addAll(candidatePipeline.load(now), now);
+
+        List<ArtworkQueue.Entry> entries = new ArrayList<>(needed);
+        for (Candidate candidate
+                : selector.select(needed, skippedTokens, rotationHistory, random.get())) {
+            entries.add(buildEntry(this, candidate));
+        }
+
+        for (ArtworkQueue.Entry entry : entries) {
+            posterCache.prefetch(entry.getPosterPath());
+        }
+        artworkQueue.addAll(entries);
+    }
+
     @NonNull
-    private Intent getViewIntent() {
-        //TODO open the show/episode/movie directly.
-        return new Intent("com.battlelancer.seriesguide.api.action.VIEW_SHOW");
+    static ArtworkQueue.Entry buildEntry(@NonNull Context context, @NonNull Candidate candidate) {
+        long start = Spans.start();
+        // time and network, e.g. 'Mon 10:00, Network'
+        StringBuilder byline = new StringBuilder();
+        long releaseTime = candidate.releaseTime;
+        if (candidate.showReleaseTime && releaseTime > 0) {
+            byline.append(TimeTools.formatToLocalDayAndTime(context, releaseTime));
+        }
+        if (!TextUtils.isEmpty(candidate.subtitle)) {
+            if (byline.length() > 0) {
+                byline.append(" — ");
+            }
+            byline.append(candidate.subtitle);
+        }
+        Spans.end(Spans.BYLINE_FORMAT, start);
+
+        return new ArtworkQueue.Entry(candidate.token, candidate.title, byline.toString(),
+                candidate.posterPath);
     }
 
     @NonNull
-    private Uri getPosterImageUri(Cursor upcomingEpisodes) {
-        return Uri.parse("http://thetvdb.com/banners/_cache/" +
-                upcomingEpisodes.getString(EpisodeQuery.SHOW_POSTER));
+    static Artwork buildArtwork(@NonNull ArtworkQueue.Entry entry, @NonNull Uri imageUri) {
+        return new Artwork.Builder()
+                .title(entry.getTitle())
+                .byline(entry.getByline())
+                .imageUri(imageUri)
+                .token(entry.getToken())
+                .viewIntent(getViewIntent())
+                .build();
+    }
+
+    /**
+     * Returns whether the artwork with the given token is still a candidate, checked against the
+     * episode index only. Episodes and shows may also come from a list, so they stay candidates as
+     * long as they are indexed and not filtered out. Movies as long as they are on the watchlist.
+     */
+    private boolean isCandidate(@Nullable String token) {
+        if (token == null) {
+            return false;
+        }
+        if (token.startsWith(Candidate.MOVIE_TOKEN_PREFIX)) {
+            int tmdbId = parseId(token.substring(Candidate.MOVIE_TOKEN_PREFIX.length()));
+            return episodeIndex.containsMovie(tmdbId, onlyUnwatched.get());
+        }
+        int showId = getShowId(token);
+        if (showId != NO_ID) {
+            return episodeIndex.containsShow(showId);
+        }
+        return episodeIndex.containsEpisode(getEpisodeId(token), onlyUnwatched.get());
+    }
+
+    @Nullable
+    private String getCurrentToken() {
+        Artwork currentArtwork = getCurrentArtwork();
+        return currentArtwork != null ? currentArtwork.getToken() : null;
+    }
+
+    private static int getEpisodeId(@Nullable String token) {
+        if (token == null || token.startsWith(Candidate.SHOW_TOKEN_PREFIX)
+                || token.startsWith(Candidate.MOVIE_TOKEN_PREFIX)) {
+            return NO_ID;
+        }
+        return parseId(token);
+    }
+
+    private static int getShowId(@Nullable String token) {
+        if (token == null || !token.startsWith(Candidate.SHOW_TOKEN_PREFIX)) {
+            return NO_ID;
+        }
+        return parseId(token.substring(Candidate.SHOW_TOKEN_PREFIX.length()));
     }
-}
 
+    /**
+     * Returns the kind of artwork the token belongs to: show, episode or movie.
+     */
+    @NonNull
+    private static String getArtworkType(@NonNull String token) {
+        if (token.startsWith(Candidate.MOVIE_TOKEN_PREFIX)) {
+            return "movie";
+        }
+        return token.startsWith(Candidate.SHOW_TOKEN_PREFIX) ? "show" : "episode";
+    }
+
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            return NO_ID;
+        }
+    }
+
+    @NonNull
+    private static Intent getViewIntent() {
+        //TODO open the show/episode/movie directly.
+        return new Intent("com.battlelancer.seriesguide.api.action.VIEW_SHOW");
+    }
+}
@@ -0,0 +1,91 @@
+package com.tasomaniac.muzei.tvshows;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.text.format.DateUtils;
+
+import com.tasomaniac.muzei.tvshows.data.ProviderHealth;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+import com.tasomaniac.muzei.tvshows.util.PackageEventBus;
+
+/**
+ * Watches SeriesGuide shows and episodes, and the SeriesGuide package being installed, updated or
+ * removed, and asks {@link SeriesGuideArtSource} to refresh its candidates once the changes settle
+ * down.
+ *
+ * <p> SeriesGuide fires hundreds of notifications while syncing, so they are coalesced into one
+ * refresh {@link #QUIET_PERIOD_MILLIS} after the last one, but at most {@link #MAX_DELAY_MILLIS}
+ * after the first one.
+ */
+final class SeriesGuideChangeObserver {
+
+    private static final long QUIET_PERIOD_MILLIS = 10 * DateUtils.SECOND_IN_MILLIS;
+    private static final long MAX_DELAY_MILLIS = DateUtils.MINUTE_IN_MILLIS;
+
+    private final Context context;
+    private final PackageEventBus packageEventBus;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private long firstPendingChange = -1;
+
+    private final ContentObserver observer = new ContentObserver(handler) {
+
+        @Override
+        public void onChange(boolean selfChange) {
+            scheduleRefresh();
+        }
+    };
+
+    private final PackageEventBus.Listener packageListener = new PackageEventBus.Listener() {
+        @Override
+        public void onPackageChanged(@NonNull String packageName) {
+            if (ProviderHealth.SERIESGUIDE_PACKAGE.equals(packageName)) {
+                scheduleRefresh();
+            }
+        }
+    };
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            firstPendingChange = -1;
+            context.startService(new Intent(context, SeriesGuideArtSource.class)
+                    .setAction(SeriesGuideArtSource.ACTION_REFRESH));
+        }
+    };
+
+    SeriesGuideChangeObserver(@NonNull Context context, @NonNull PackageEventBus packageEventBus) {
+        this.context = context.getApplicationContext();
+        this.packageEventBus = packageEventBus;
+    }
+
+    public void register() {
+        context.getContentResolver().registerContentObserver(Episodes.CONTENT_URI, true, observer);
+        context.getContentResolver().registerContentObserver(Shows.CONTENT_URI, true, observer);
+        packageEventBus.subscribe(packageListener);
+    }
+
+    public void unregister() {
+        context.getContentResolver().unregisterContentObserver(observer);
+        packageEventBus.unsubscribe(packageListener);
+        handler.removeCallbacks(refresh);
+        firstPendingChange = -1;
+    }
+
+    private void scheduleRefresh() {
+        long now = SystemClock.elapsedRealtime();
+        if (firstPendingChange == -1) {
+            firstPendingChange = now;
+        }
+
+        handler.removeCallbacks(refresh);
+        long delay = Math.min(QUIET_PERIOD_MILLIS, firstPendingChange + MAX_DELAY_MILLIS - now);
+        handler.postDelayed(refresh, Math.max(0, delay));
+    }
+}
@@ -0,0 +1,176 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.AtomicFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Persistent queue of the next artworks to publish, built ahead of time so that a rotation is a
+ * dequeue without any provider access.
+ */
+public class ArtworkQueue {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final AtomicFile file;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    private boolean loaded;
+    private long builtAtMillis;
+
+    public ArtworkQueue(@NonNull File file) {
+        this.file = new AtomicFile(file);
+    }
+
+    @Nullable
+    public synchronized Entry poll() {
+        ensureLoaded();
+        Entry entry = entries.poll();
+        if (entry != null) {
+            save();
+        }
+        return entry;
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    /**
+     * Returns when the oldest queued entry was built, or 0 if the queue is empty.
+     */
+    public synchronized long getBuiltAtMillis() {
+        ensureLoaded();
+        return entries.isEmpty() ? 0 : builtAtMillis;
+    }
+
+    @NonNull
+    public synchronized Set<String> getTokens() {
+        ensureLoaded();
+        Set<String> tokens = new HashSet<>(entries.size());
+        for (Entry entry : entries) {
+            tokens.add(entry.token);
+        }
+        return tokens;
+    }
+
+    public synchronized void addAll(@NonNull Collection<Entry> newEntries) {
+        ensureLoaded();
+        if (newEntries.isEmpty()) {
+            return;
+        }
+        if (entries.isEmpty()) {
+            builtAtMillis = System.currentTimeMillis();
+        }
+        entries.addAll(newEntries);
+        save();
+    }
+
+    public synchronized void clear() {
+        ensureLoaded();
+        entries.clear();
+        save();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(file.openRead());
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            builtAtMillis = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                entries.add(new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+        } catch (FileNotFoundException ignored) {
+            // Nothing queued yet.
+        } catch (IOException e) {
+            Timber.e(e, "Error reading artwork queue");
+            entries.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void save() {
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(builtAtMillis);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.token);
+                out.writeUTF(entry.title);
+                out.writeUTF(entry.byline);
+                out.writeUTF(entry.posterPath);
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Timber.e(e, "Error writing artwork queue");
+            file.failWrite(stream);
+        }
+    }
+
+    /**
+     * Everything needed to publish an artwork. The image URI is resolved from the poster path at
+     * publish time, so it points into the poster cache whenever possible.
+     */
+    public static final class Entry {
+        final String token;
+        final String title;
+        final String byline;
+        final String posterPath;
+
+        public Entry(@NonNull String token, @Nullable String title, @Nullable String byline,
+                     @Nullable String posterPath) {
+            this.token = token;
+            this.title = title == null ? "" : title;
+            this.byline = byline == null ? "" : byline;
+            this.posterPath = posterPath == null ? "" : posterPath;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getByline() {
+            return byline;
+        }
+
+        public String getPosterPath() {
+            return posterPath;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+/**
+ * Streams cursor rows into a single reusable row object, so walking thousands of rows allocates no
+ * row objects. Visitors see the same instance for every row and must copy what they keep.
+ *
+ * <p> Mappers are built for a {@link Projection} and only read the columns it declares, the other
+ * fields of the row keep their defaults.
+ */
+public abstract class CursorMapper<R> {
+
+    public interface Visitor<R> {
+
+        /**
+         * @return false to stop the walk after this row.
+         */
+        boolean visit(@NonNull R row);
+    }
+
+    @NonNull
+    public abstract R newRow();
+
+    /**
+     * Reads the current row of {@code cursor} into {@code row}.
+     */
+    public abstract void fill(@NonNull Cursor cursor, @NonNull R row);
+
+    /**
+     * Walks the remaining rows of {@code cursor}. Does not close it.
+     *
+     * @return false if the visitor stopped early.
+     */
+    public final boolean forEach(@NonNull Cursor cursor, @NonNull Visitor<? super R> visitor) {
+        return forEach(cursor, newRow(), visitor);
+    }
+
+    /**
+     * Walks the remaining rows of {@code cursor}, filling {@code row}. Lets a walk over several
+     * cursors share one row. Does not close the cursor.
+     *
+     * @return false if the visitor stopped early.
+     */
+    public final boolean forEach(@NonNull Cursor cursor, @NonNull R row,
+                                 @NonNull Visitor<? super R> visitor) {
+        while (cursor.moveToNext()) {
+            fill(cursor, row);
+            if (!visitor.visit(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
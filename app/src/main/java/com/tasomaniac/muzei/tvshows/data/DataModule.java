@@ -1,11 +1,16 @@
 package com.tasomaniac.muzei.tvshows.data;
 
 import android.app.Application;
+import android.content.ContentResolver;
 import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
 import android.preference.PreferenceManager;
 
 import com.tasomaniac.muzei.tvshows.R;
 import com.tasomaniac.muzei.tvshows.data.prefs.BooleanPreference;
+import com.tasomaniac.muzei.tvshows.data.prefs.PreferenceSnapshot;
+
+import java.io.File;
 
 import javax.inject.Singleton;
 
@@ -16,21 +21,48 @@ import dagger.Provides;
 public final class DataModule {
     public static final boolean DEFAULT_ONLY_UNWATCHED = false;
 
+    private static final String POSTER_BASE_URL = "http://thetvdb.com/banners/_cache/";
+    private static final long POSTER_CACHE_SIZE = 20 * 1024 * 1024;
+    private static final int ROTATION_HISTORY_SIZE = 50;
+
     @Provides
     @Singleton
     SharedPreferences provideSharedPreferences(Application app) {
         return PreferenceManager.getDefaultSharedPreferences(app);
     }
 
+    @Provides @Singleton PreferenceSnapshot providePreferenceSnapshot(SharedPreferences prefs) {
+        return new PreferenceSnapshot(prefs);
+    }
+
     @Provides @Singleton @OnlyUnwatched
     BooleanPreference provideOnlyUnwatchedPreference(Application app,
-            SharedPreferences prefs) {
-        return new BooleanPreference(prefs,
+            PreferenceSnapshot snapshot) {
+        return new BooleanPreference(snapshot,
                 app.getString(R.string.pref_key_only_unwatched),
                 DEFAULT_ONLY_UNWATCHED);
     }
 
-    @Provides @OnlyUnwatched Boolean provideOnlyUnwatched(@OnlyUnwatched BooleanPreference pref) {
-        return pref.get();
+    @Provides @Singleton EpisodeIndex provideEpisodeIndex(Application app,
+            ContentResolver contentResolver) {
+        return new EpisodeIndex(new MirrorDatabase(app, MirrorDatabase.NAME), contentResolver);
+    }
+
+    @Provides @Singleton ArtworkQueue provideArtworkQueue(Application app) {
+        return new ArtworkQueue(new File(app.getFilesDir(), "artwork_queue"));
+    }
+
+    @Provides @Singleton RotationHistory provideRotationHistory(Application app) {
+        return new RotationHistory(new File(app.getFilesDir(), "rotation_history"),
+                ROTATION_HISTORY_SIZE);
+    }
+
+    @Provides @Singleton PosterCache providePosterCache(Application app) {
+        return new PosterCache(app, POSTER_BASE_URL, POSTER_CACHE_SIZE);
+    }
+
+    @Provides @Singleton ProviderHealth provideProviderHealth(PackageManager packageManager,
+            ContentResolver contentResolver) {
+        return new ProviderHealth(packageManager, contentResolver);
     }
 }
\ No newline at end of file
@@ -0,0 +1,999 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.SparseArray;
+
+import com.tasomaniac.muzei.tvshows.data.MirrorDatabase.SyncState;
+import com.tasomaniac.muzei.tvshows.data.MirrorDatabase.Tables;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Movies;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+import com.tasomaniac.muzei.tvshows.util.Spans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import timber.log.Timber;
+
+/**
+ * Local, persistent index of the episodes, shows and watchlist movies the art source can pick
+ * from.
+ *
+ * <p> The index is a {@link MirrorDatabase} kept current from {@link Episodes#LAST_EDITED} and
+ * {@link Shows#LASTEDIT} deltas, so picking the next artwork is an in-process query on a covering
+ * index instead of a joined and sorted query against the SeriesGuide provider. Shows are few and
+ * looked up for every candidate, so they are kept in memory as well.
+ *
+ * <p> Only {@link #sync} and {@link #markShown} lock the index. Reads go to the mirror without
+ * the lock, so candidate sources read concurrently and do not wait for a sync: the mirror logs
+ * ahead and readers see the last committed sync. The shows in memory are swapped for a new
+ * snapshot once a sync commits.
+ */
+public class EpisodeIndex {
+
+    /**
+     * Episodes released before now minus this are dropped from the index.
+     */
+    private static final long RETENTION_MILLIS = 7 * DateUtils.DAY_IN_MILLIS;
+
+    /**
+     * An index older than this is synced again before it is used.
+     */
+    private static final long SYNC_INTERVAL_MILLIS = 6 * DateUtils.HOUR_IN_MILLIS;
+
+    /**
+     * Deleted episodes do not show up in deltas, so the index is rebuilt from scratch this often.
+     */
+    private static final long REBUILD_INTERVAL_MILLIS = 7 * DateUtils.DAY_IN_MILLIS;
+
+    interface ShowQuery {
+
+        /**
+         * Identity and change tracking of the sync.
+         */
+        String[] SYNC_COLUMNS = new String[]{Shows._ID, Shows.LASTEDIT};
+
+        /**
+         * Title, byline and poster of the artwork.
+         */
+        String[] ARTWORK_COLUMNS = new String[]{Shows.TITLE, Shows.NETWORK, Shows.POSTER};
+
+        /**
+         * Which shows are candidates, and which are scored by their next episode.
+         */
+        String[] CANDIDATE_COLUMNS = new String[]{
+                Shows.HIDDEN,
+                Shows.NEXTEPISODE,
+                Shows.NEXTAIRDATEMS
+        };
+
+        /**
+         * Scoring, see ArtworkSelector.
+         */
+        String[] SCORE_COLUMNS = new String[]{Shows.FAVORITE, Shows.RATING_USER};
+
+        Projection PROJECTION = new Projection.Builder()
+                .add(SYNC_COLUMNS)
+                .add(ARTWORK_COLUMNS)
+                .add(CANDIDATE_COLUMNS)
+                .add(SCORE_COLUMNS)
+                .build();
+
+        ShowRow.Mapper MAPPER = new ShowRow.Mapper(PROJECTION);
+    }
+
+    interface EpisodeQuery {
+
+        /**
+         * Release time, show and watched flag, which is all candidates and the scoring read of an
+         * episode. Titles and numbers are never shown.
+         */
+        String[] CANDIDATE_COLUMNS = new String[]{
+                Episodes.FIRSTAIREDMS,
+                Shows.REF_SHOW_ID,
+                Episodes.WATCHED
+        };
+
+        Projection PROJECTION = new Projection.Builder()
+                .add(KeysetQuery.KEY_COLUMNS)
+                .add(CANDIDATE_COLUMNS)
+                .add(Episodes.LAST_EDITED)
+                .build();
+
+        String SELECTION_RETAINED = Episodes.FIRSTAIREDMS + ">=?";
+
+        String SELECTION_EDITED = Episodes.LAST_EDITED + ">=?";
+
+        EpisodeRow.Mapper MAPPER = new EpisodeRow.Mapper(PROJECTION);
+    }
+
+    interface WatchedQuery {
+
+        Projection PROJECTION = new Projection.Builder()
+                .add(KeysetQuery.KEY_COLUMNS)
+                .add(Episodes.WATCHED)
+                .build();
+
+        EpisodeRow.Mapper MAPPER = new EpisodeRow.Mapper(PROJECTION);
+    }
+
+    /**
+     * Movies on the watchlist. They are few and changing the watchlist does not bump
+     * {@link Movies#LAST_UPDATED}, so they are read in full every sync.
+     */
+    interface MovieQuery {
+
+        Projection PROJECTION = new Projection.Builder()
+                .add(Movies.TMDB_ID, Movies.TITLE, Movies.POSTER, Movies.RELEASED_UTC_MS)
+                .add(Movies.RATING_USER, Movies.WATCHED)
+                .build();
+
+        MovieRow.Mapper MAPPER = new MovieRow.Mapper(PROJECTION);
+    }
+
+    interface MirrorShowQuery {
+
+        Projection PROJECTION = new Projection.Builder()
+                .add(ShowQuery.PROJECTION.columns())
+                .add(MirrorDatabase.LAST_SHOWN)
+                .build();
+
+        ShowRow.Mapper MAPPER = new ShowRow.Mapper(PROJECTION);
+
+        String INSERT = "INSERT OR REPLACE INTO " + Tables.SHOWS + " ("
+                + TextUtils.join(",", PROJECTION.columns()) + ") VALUES ("
+                + placeholders(PROJECTION.columns().length) + ")";
+    }
+
+    interface MirrorEpisodeQuery {
+
+        Projection PROJECTION = new Projection.Builder()
+                .add(Episodes._ID)
+                .add(EpisodeQuery.CANDIDATE_COLUMNS)
+                .build();
+
+        EpisodeRow.Mapper MAPPER = new EpisodeRow.Mapper(PROJECTION);
+
+        String SELECTION_RANGE = Episodes.FIRSTAIREDMS + ">=? AND " + Episodes.FIRSTAIREDMS + "<?";
+
+        String SELECTION_RELEASED_SINCE = Episodes.FIRSTAIREDMS + ">=?";
+
+        String SELECTION_ID = Episodes._ID + "=?";
+
+        String SELECTION_VISIBLE = " AND " + Shows.HIDDEN + "=0";
+
+        String SELECTION_UNWATCHED = " AND " + Episodes.WATCHED + "=0";
+
+        String INSERT = "INSERT OR REPLACE INTO " + Tables.EPISODES + " (" + Episodes._ID + ","
+                + Episodes.FIRSTAIREDMS + "," + Shows.REF_SHOW_ID + "," + Episodes.WATCHED + ","
+                + Shows.HIDDEN + ") VALUES (?,?,?,?,?)";
+
+        String UPDATE_WATCHED = "UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED
+                + "=? WHERE " + Episodes._ID + "=? AND " + Episodes.WATCHED + "<>?";
+
+        String UPDATE_HIDDEN = "UPDATE " + Tables.EPISODES + " SET " + Shows.HIDDEN
+                + "=? WHERE " + Shows.REF_SHOW_ID + "=?";
+
+        String SELECTION_PRUNED = Episodes.FIRSTAIREDMS + "<? OR " + Shows.REF_SHOW_ID
+                + " NOT IN (SELECT " + Shows._ID + " FROM " + Tables.SHOWS + ")";
+    }
+
+    interface MirrorMovieQuery {
+
+        String SELECTION_UNWATCHED = Movies.WATCHED + "=0";
+
+        String INSERT = "INSERT OR REPLACE INTO " + Tables.MOVIES + " (" + Movies.TMDB_ID + ","
+                + Movies.TITLE + "," + Movies.POSTER + "," + Movies.RELEASED_UTC_MS + ","
+                + Movies.RATING_USER + "," + Movies.WATCHED + ") VALUES (?,?,?,?,?,?)";
+    }
+
+    private static final Comparator<Show> NEXT_RELEASE_TIME_ORDER = new Comparator<Show>() {
+        @Override
+        public int compare(Show lhs, Show rhs) {
+            if (lhs.nextReleaseTime != rhs.nextReleaseTime) {
+                return lhs.nextReleaseTime < rhs.nextReleaseTime ? -1 : 1;
+            }
+            return lhs.id < rhs.id ? -1 : (lhs.id == rhs.id ? 0 : 1);
+        }
+    };
+
+    private final MirrorDatabase database;
+    private final ContentResolver contentResolver;
+
+    /**
+     * Shows of the last committed sync. Never modified once assigned, a sync builds a new one.
+     */
+    private volatile SparseArray<Show> shows = new SparseArray<>();
+
+    private volatile boolean loaded;
+    private long episodeWatermark;
+    private long lastSyncMillis;
+    private long lastRebuildMillis;
+
+    EpisodeIndex(@NonNull MirrorDatabase database, @NonNull ContentResolver contentResolver) {
+        this.database = database;
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Syncs the index with SeriesGuide if it was never synced or the last sync is too old.
+     *
+     * @return false if a sync was needed and failed.
+     */
+    public synchronized boolean syncIfStale() {
+        ensureLoaded();
+        if (System.currentTimeMillis() - lastSyncMillis >= SYNC_INTERVAL_MILLIS) {
+            return sync();
+        }
+        return true;
+    }
+
+    /**
+     * Applies the changes made in SeriesGuide since the last sync in one transaction. On failure
+     * the previous contents are kept.
+     *
+     * @return false if SeriesGuide could not be queried.
+     */
+    public synchronized boolean sync() {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        boolean rebuild = now - lastRebuildMillis >= REBUILD_INTERVAL_MILLIS;
+
+        SQLiteDatabase db;
+        try {
+            db = database.getWritableDatabase();
+        } catch (SQLiteException e) {
+            Timber.e(e, "Error opening episode index");
+            return false;
+        }
+
+        SparseArray<Show> synced;
+        db.beginTransaction();
+        try {
+            if (rebuild) {
+                // Shows are kept for when they were last shown, their details are read again.
+                db.delete(Tables.EPISODES, null, null);
+                episodeWatermark = 0;
+            }
+            long retainedSince = now - RETENTION_MILLIS;
+            List<Integer> newShowIds = new ArrayList<>();
+            synced = syncShows(db, newShowIds);
+            syncEpisodes(db, synced, retainedSince, rebuild, newShowIds);
+            if (!rebuild) {
+                syncWatched(db, retainedSince);
+            }
+            syncMovies(db);
+            db.delete(Tables.EPISODES, MirrorEpisodeQuery.SELECTION_PRUNED,
+                    new String[]{String.valueOf(retainedSince)});
+
+            lastSyncMillis = now;
+            if (rebuild) {
+                lastRebuildMillis = now;
+            }
+            saveSyncState(db);
+            db.setTransactionSuccessful();
+        } catch (SQLiteException | SecurityException | IllegalArgumentException e) {
+            Timber.e(e, "Error syncing episode index with Series Guide");
+            // The transaction is rolled back, fall back to the last synced index.
+            reset();
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+        shows = synced;
+        return true;
+    }
+
+    /**
+     * Returns up to {@code limit} episodes released in {@code [fromMillis, toMillis)}, earliest
+     * first or latest first. Episodes of hidden shows are left out.
+     */
+    @NonNull
+    public List<Episode> findEpisodes(long fromMillis, long toMillis, boolean onlyUnwatched,
+                                      boolean latestFirst, int limit) {
+        ensureLoaded();
+        final List<Episode> result = new ArrayList<>();
+        try {
+            Cursor cursor = database.getReadableDatabase().query(Tables.EPISODES,
+                    MirrorEpisodeQuery.PROJECTION.columns(),
+                    candidateSelection(MirrorEpisodeQuery.SELECTION_RANGE, onlyUnwatched),
+                    new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)},
+                    null, null, Episodes.FIRSTAIREDMS + (latestFirst ? " DESC" : " ASC"),
+                    String.valueOf(limit));
+            try {
+                MirrorEpisodeQuery.MAPPER.forEach(cursor,
+                        new CursorMapper.Visitor<EpisodeRow>() {
+                            @Override
+                            public boolean visit(@NonNull EpisodeRow row) {
+                                result.add(newEpisode(row));
+                                return true;
+                            }
+                        });
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            onReadError(e);
+            result.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the release time of the first episode released at or after {@code fromMillis}, or 0
+     * if there is none.
+     */
+    public long findNextReleaseTime(long fromMillis, boolean onlyUnwatched) {
+        ensureLoaded();
+        try {
+            return DatabaseUtils.longForQuery(database.getReadableDatabase(),
+                    "SELECT IFNULL((SELECT " + Episodes.FIRSTAIREDMS + " FROM " + Tables.EPISODES
+                            + " WHERE " + candidateSelection(
+                            MirrorEpisodeQuery.SELECTION_RELEASED_SINCE, onlyUnwatched)
+                            + " ORDER BY " + Episodes.FIRSTAIREDMS + " LIMIT 1),0)",
+                    new String[]{String.valueOf(fromMillis)});
+        } catch (SQLiteException e) {
+            onReadError(e);
+            return 0;
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} visible shows with a next episode, the soonest releasing first.
+     */
+    @NonNull
+    public List<Show> findShowsWithNextEpisode(int limit) {
+        ensureLoaded();
+        SparseArray<Show> shows = this.shows;
+        List<Show> result = new ArrayList<>();
+        for (int i = 0, size = shows.size(); i < size; i++) {
+            Show show = shows.valueAt(i);
+            if (!show.hidden && show.hasNextEpisode) {
+                result.add(show);
+            }
+        }
+        Collections.sort(result, NEXT_RELEASE_TIME_ORDER);
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    /**
+     * Calls {@code visitor} with every watchlist movie, leaving out watched ones if
+     * {@code onlyUnwatched}.
+     */
+    public void forEachWatchlistMovie(
+            boolean onlyUnwatched, @NonNull CursorMapper.Visitor<MovieRow> visitor) {
+        ensureLoaded();
+        try {
+            Cursor cursor = database.getReadableDatabase().query(Tables.MOVIES,
+                    MovieQuery.PROJECTION.columns(),
+                    onlyUnwatched ? MirrorMovieQuery.SELECTION_UNWATCHED : null,
+                    null, null, null, null);
+            try {
+                MovieQuery.MAPPER.forEach(cursor, visitor);
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            onReadError(e);
+        }
+    }
+
+    /**
+     * Returns whether the episode with {@code episodeId} is indexed and neither watched, if
+     * {@code onlyUnwatched}, nor of a hidden show.
+     */
+    public boolean containsEpisode(int episodeId, boolean onlyUnwatched) {
+        ensureLoaded();
+        try {
+            return DatabaseUtils.queryNumEntries(database.getReadableDatabase(), Tables.EPISODES,
+                    candidateSelection(MirrorEpisodeQuery.SELECTION_ID, onlyUnwatched),
+                    new String[]{String.valueOf(episodeId)}) > 0;
+        } catch (SQLiteException e) {
+            onReadError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the movie with {@code tmdbId} is on the watchlist and not watched, if
+     * {@code onlyUnwatched}.
+     */
+    public boolean containsMovie(int tmdbId, boolean onlyUnwatched) {
+        ensureLoaded();
+        String selection = Movies.TMDB_ID + "=?"
+                + (onlyUnwatched ? " AND " + MirrorMovieQuery.SELECTION_UNWATCHED : "");
+        try {
+            return DatabaseUtils.queryNumEntries(database.getReadableDatabase(), Tables.MOVIES,
+                    selection, new String[]{String.valueOf(tmdbId)}) > 0;
+        } catch (SQLiteException e) {
+            onReadError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the show with {@code showId} is indexed and not hidden.
+     */
+    public boolean containsShow(int showId) {
+        ensureLoaded();
+        Show show = shows.get(showId);
+        return show != null && !show.hidden;
+    }
+
+    /**
+     * Records that an artwork of the show was published and persists it.
+     */
+    public synchronized void markShown(int showId, long shownAtMillis) {
+        ensureLoaded();
+        Show show = shows.get(showId);
+        if (show != null) {
+            show.lastShownMillis = shownAtMillis;
+            ContentValues values = new ContentValues(1);
+            values.put(MirrorDatabase.LAST_SHOWN, shownAtMillis);
+            try {
+                database.getWritableDatabase().update(Tables.SHOWS, values, Shows._ID + "=?",
+                        new String[]{String.valueOf(showId)});
+            } catch (SQLiteException e) {
+                // Kept in memory until the mirror is read again.
+                Timber.e(e, "Error writing episode index");
+                reset();
+            }
+        }
+    }
+
+    @Nullable
+    public Episode getEpisode(int episodeId) {
+        ensureLoaded();
+        try {
+            Cursor cursor = database.getReadableDatabase().query(Tables.EPISODES,
+                    MirrorEpisodeQuery.PROJECTION.columns(), MirrorEpisodeQuery.SELECTION_ID,
+                    new String[]{String.valueOf(episodeId)}, null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                EpisodeRow row = MirrorEpisodeQuery.MAPPER.newRow();
+                MirrorEpisodeQuery.MAPPER.fill(cursor, row);
+                return newEpisode(row);
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            onReadError(e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the indexed episodes among {@code episodeIds} with a single query, in no particular
+     * order. Episodes of hidden shows are left out, so are watched ones if {@code onlyUnwatched}.
+     */
+    @NonNull
+    public List<Episode> getEpisodes(@NonNull List<Integer> episodeIds, boolean onlyUnwatched) {
+        ensureLoaded();
+        final List<Episode> result = new ArrayList<>(episodeIds.size());
+        if (episodeIds.isEmpty()) {
+            return result;
+        }
+        // Ids are integers, so they go into the statement instead of as many bind arguments.
+        String selection = Episodes._ID + " IN (" + TextUtils.join(",", episodeIds) + ")";
+        try {
+            Cursor cursor = database.getReadableDatabase().query(Tables.EPISODES,
+                    MirrorEpisodeQuery.PROJECTION.columns(),
+                    candidateSelection(selection, onlyUnwatched), null, null, null, null);
+            try {
+                MirrorEpisodeQuery.MAPPER.forEach(cursor,
+                        new CursorMapper.Visitor<EpisodeRow>() {
+                            @Override
+                            public boolean visit(@NonNull EpisodeRow row) {
+                                result.add(newEpisode(row));
+                                return true;
+                            }
+                        });
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            onReadError(e);
+            result.clear();
+        }
+        return result;
+    }
+
+    @Nullable
+    public Show getShow(int showId) {
+        ensureLoaded();
+        return shows.get(showId);
+    }
+
+    private static String candidateSelection(String selection, boolean onlyUnwatched) {
+        return selection + MirrorEpisodeQuery.SELECTION_VISIBLE
+                + (onlyUnwatched ? MirrorEpisodeQuery.SELECTION_UNWATCHED : "");
+    }
+
+    private static Episode newEpisode(EpisodeRow row) {
+        Episode episode = new Episode(row.id);
+        episode.releaseTime = row.releaseTime;
+        episode.showId = row.showId;
+        episode.watched = row.watched;
+        return episode;
+    }
+
+    /**
+     * Reads all shows into the mirror and returns them as a new snapshot, adding the ids of the
+     * ones which are new to the index to {@code newShowIds}. Shows are few and the table needs no
+     * join, so a full narrow scan also catches removed and hidden shows which
+     * {@link Shows#LASTEDIT} does not reflect. Only changed shows are written.
+     */
+    private SparseArray<Show> syncShows(SQLiteDatabase db, final List<Integer> newShowIds) {
+        long queryStart = Spans.start();
+        Cursor cursor = contentResolver.query(Shows.CONTENT_URI,
+                ShowQuery.PROJECTION.columns(), null, null, null);
+        Spans.end(Spans.PROVIDER_QUERY, queryStart);
+        if (cursor == null) {
+            throw new IllegalArgumentException("Series Guide shows are not available");
+        }
+
+        final SQLiteStatement insert = db.compileStatement(MirrorShowQuery.INSERT);
+        final SQLiteStatement updateHidden = db.compileStatement(MirrorEpisodeQuery.UPDATE_HIDDEN);
+        final SparseArray<Show> previous = shows;
+        final SparseArray<Show> current = new SparseArray<>(cursor.getCount());
+        long walkStart = Spans.start();
+        try {
+            ShowQuery.MAPPER.forEach(cursor, new CursorMapper.Visitor<ShowRow>() {
+                @Override
+                public boolean visit(@NonNull ShowRow row) {
+                    // Readers may hold the previous show, it is copied instead of updated.
+                    Show previousShow = previous.get(row.id);
+                    boolean isNew = previousShow == null;
+                    Show show = isNew ? new Show(row.id) : new Show(previousShow);
+                    if (isNew) {
+                        newShowIds.add(row.id);
+                    }
+                    boolean wasHidden = show.hidden;
+                    if (show.update(row) || isNew) {
+                        // Favorite, rating and hidden do not bump the last edit time.
+                        row.lastShownMillis = show.lastShownMillis;
+                        bindShow(insert, row);
+                        insert.executeInsert();
+                    }
+                    if (!isNew && wasHidden != show.hidden) {
+                        updateHidden.bindLong(1, show.hidden ? 1 : 0);
+                        updateHidden.bindLong(2, show.id);
+                        updateHidden.executeUpdateDelete();
+                    }
+                    current.put(row.id, show);
+                    return true;
+                }
+            });
+        } finally {
+            cursor.close();
+            insert.close();
+            updateHidden.close();
+            Spans.end(Spans.CURSOR_WALK, walkStart);
+        }
+
+        for (int i = 0; i < previous.size(); i++) {
+            int id = previous.keyAt(i);
+            if (current.get(id) == null) {
+                // Its episodes are pruned.
+                db.delete(Tables.SHOWS, Shows._ID + "=?", new String[]{String.valueOf(id)});
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Binds the columns of {@link MirrorShowQuery#PROJECTION}, in order.
+     */
+    private static void bindShow(SQLiteStatement statement, ShowRow row) {
+        String[] columns = MirrorShowQuery.PROJECTION.columns();
+        for (int i = 0; i < columns.length; i++) {
+            int index = i + 1;
+            switch (columns[i]) {
+                case Shows._ID:
+                    statement.bindLong(index, row.id);
+                    break;
+                case Shows.TITLE:
+                    bindString(statement, index, row.title);
+                    break;
+                case Shows.NETWORK:
+                    bindString(statement, index, row.network);
+                    break;
+                case Shows.POSTER:
+                    bindString(statement, index, row.poster);
+                    break;
+                case Shows.HIDDEN:
+                    statement.bindLong(index, row.hidden ? 1 : 0);
+                    break;
+                case Shows.LASTEDIT:
+                    statement.bindLong(index, row.lastEdited);
+                    break;
+                case Shows.NEXTEPISODE:
+                    bindString(statement, index, row.nextEpisode);
+                    break;
+                case Shows.NEXTAIRDATEMS:
+                    statement.bindLong(index, row.nextReleaseTime);
+                    break;
+                case Shows.FAVORITE:
+                    statement.bindLong(index, row.favorite ? 1 : 0);
+                    break;
+                case Shows.RATING_USER:
+                    statement.bindLong(index, row.rating);
+                    break;
+                case MirrorDatabase.LAST_SHOWN:
+                    statement.bindLong(index, row.lastShownMillis);
+                    break;
+                default:
+                    throw new AssertionError("Unmapped show column " + columns[i]);
+            }
+        }
+    }
+
+    private void syncEpisodes(SQLiteDatabase db, final SparseArray<Show> shows,
+                              long retainedSince, boolean rebuild, List<Integer> newShowIds) {
+        StringBuilder selection = new StringBuilder(EpisodeQuery.SELECTION_RETAINED);
+        List<String> selectionArgs = new ArrayList<>();
+        selectionArgs.add(String.valueOf(retainedSince));
+
+        if (!rebuild) {
+            // Episodes of shows added since the last sync may carry old edit times.
+            selection.append(" AND (").append(EpisodeQuery.SELECTION_EDITED);
+            selectionArgs.add(String.valueOf(episodeWatermark));
+            if (!newShowIds.isEmpty()) {
+                selection.append(" OR ").append(Shows.REF_SHOW_ID).append(" IN (");
+                for (int i = 0; i < newShowIds.size(); i++) {
+                    selection.append(i == 0 ? "?" : ",?");
+                    selectionArgs.add(String.valueOf(newShowIds.get(i)));
+                }
+                selection.append(")");
+            }
+            selection.append(")");
+        }
+
+        final SQLiteStatement insert = db.compileStatement(MirrorEpisodeQuery.INSERT);
+        try {
+            new KeysetQuery(contentResolver, Episodes.CONTENT_URI, EpisodeQuery.PROJECTION)
+                    .run(selection.toString(),
+                            selectionArgs.toArray(new String[selectionArgs.size()]),
+                            EpisodeQuery.MAPPER, new CursorMapper.Visitor<EpisodeRow>() {
+                                @Override
+                                public boolean visit(@NonNull EpisodeRow row) {
+                                    episodeWatermark = Math.max(episodeWatermark, row.lastEdited);
+                                    Show show = shows.get(row.showId);
+                                    if (show == null) {
+                                        return true;
+                                    }
+                                    insert.bindLong(1, row.id);
+                                    insert.bindLong(2, row.releaseTime);
+                                    insert.bindLong(3, row.showId);
+                                    insert.bindLong(4, row.watched ? 1 : 0);
+                                    insert.bindLong(5, show.hidden ? 1 : 0);
+                                    insert.executeInsert();
+                                    return true;
+                                }
+                            });
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * Watching an episode does not touch {@link Episodes#LAST_EDITED}, so the watched flags of the
+     * retained episodes are refreshed with a separate narrow query.
+     */
+    private void syncWatched(SQLiteDatabase db, long retainedSince) {
+        final SQLiteStatement update = db.compileStatement(MirrorEpisodeQuery.UPDATE_WATCHED);
+        try {
+            new KeysetQuery(contentResolver, Episodes.CONTENT_URI, WatchedQuery.PROJECTION)
+                    .run(EpisodeQuery.SELECTION_RETAINED,
+                            new String[]{String.valueOf(retainedSince)},
+                            WatchedQuery.MAPPER, new CursorMapper.Visitor<EpisodeRow>() {
+                                @Override
+                                public boolean visit(@NonNull EpisodeRow row) {
+                                    long watched = row.watched ? 1 : 0;
+                                    update.bindLong(1, watched);
+                                    update.bindLong(2, row.id);
+                                    update.bindLong(3, watched);
+                                    update.executeUpdateDelete();
+                                    return true;
+                                }
+                            });
+        } finally {
+            update.close();
+        }
+    }
+
+    private void syncMovies(SQLiteDatabase db) {
+        long queryStart = Spans.start();
+        Cursor cursor = contentResolver.query(Movies.CONTENT_URI,
+                MovieQuery.PROJECTION.columns(), Movies.SELECTION_WATCHLIST, null, null);
+        Spans.end(Spans.PROVIDER_QUERY, queryStart);
+        if (cursor == null) {
+            throw new IllegalArgumentException("Series Guide movies are not available");
+        }
+
+        db.delete(Tables.MOVIES, null, null);
+        final SQLiteStatement insert = db.compileStatement(MirrorMovieQuery.INSERT);
+        long walkStart = Spans.start();
+        try {
+            MovieQuery.MAPPER.forEach(cursor, new CursorMapper.Visitor<MovieRow>() {
+                @Override
+                public boolean visit(@NonNull MovieRow row) {
+                    insert.bindLong(1, row.tmdbId);
+                    bindString(insert, 2, row.title);
+                    bindString(insert, 3, row.poster);
+                    insert.bindLong(4, row.releasedMillis);
+                    insert.bindLong(5, row.rating);
+                    insert.bindLong(6, row.watched ? 1 : 0);
+                    insert.executeInsert();
+                    return true;
+                }
+            });
+        } finally {
+            cursor.close();
+            insert.close();
+            Spans.end(Spans.CURSOR_WALK, walkStart);
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index,
+                                   @Nullable String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        return placeholders.toString();
+    }
+
+    private void saveSyncState(SQLiteDatabase db) {
+        saveSyncState(db, SyncState.EPISODE_WATERMARK, episodeWatermark);
+        saveSyncState(db, SyncState.LAST_SYNC, lastSyncMillis);
+        saveSyncState(db, SyncState.LAST_REBUILD, lastRebuildMillis);
+    }
+
+    private static void saveSyncState(SQLiteDatabase db, String key, long value) {
+        ContentValues values = new ContentValues(2);
+        values.put(SyncState.KEY, key);
+        values.put(SyncState.VALUE, value);
+        db.replaceOrThrow(Tables.SYNC_STATE, null, values);
+    }
+
+    /**
+     * Reloads the sync state and shows from the mirror on the next access.
+     */
+    private void reset() {
+        loaded = false;
+    }
+
+    /**
+     * Queries answer as if the mirror was empty, it is read again on the next access.
+     */
+    private void onReadError(SQLiteException e) {
+        Timber.e(e, "Error reading episode index");
+        reset();
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    private void load() {
+        episodeWatermark = 0;
+        lastSyncMillis = 0;
+        lastRebuildMillis = 0;
+
+        SparseArray<Show> loadedShows = new SparseArray<>();
+        try {
+            SQLiteDatabase db = database.getReadableDatabase();
+            loadSyncState(db);
+            loadShows(db, loadedShows);
+        } catch (SQLiteException e) {
+            Timber.e(e, "Error reading episode index, rebuilding it");
+            loadedShows.clear();
+            lastRebuildMillis = 0;
+        }
+        shows = loadedShows;
+        loaded = true;
+    }
+
+    private void loadSyncState(SQLiteDatabase db) {
+        Cursor cursor = db.query(Tables.SYNC_STATE,
+                new String[]{SyncState.KEY, SyncState.VALUE}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                long value = cursor.getLong(1);
+                switch (cursor.getString(0)) {
+                    case SyncState.EPISODE_WATERMARK:
+                        episodeWatermark = value;
+                        break;
+                    case SyncState.LAST_SYNC:
+                        lastSyncMillis = value;
+                        break;
+                    case SyncState.LAST_REBUILD:
+                        lastRebuildMillis = value;
+                        break;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void loadShows(SQLiteDatabase db, final SparseArray<Show> shows) {
+        Cursor cursor = db.query(Tables.SHOWS, MirrorShowQuery.PROJECTION.columns(),
+                null, null, null, null, null);
+        try {
+            MirrorShowQuery.MAPPER.forEach(cursor, new CursorMapper.Visitor<ShowRow>() {
+                @Override
+                public boolean visit(@NonNull ShowRow row) {
+                    Show show = new Show(row.id);
+                    show.update(row);
+                    show.lastShownMillis = row.lastShownMillis;
+                    shows.put(show.id, show);
+                    return true;
+                }
+            });
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public static final class Show {
+        final int id;
+        String title;
+        String network;
+        String poster;
+        boolean hidden;
+        long lastEdited;
+        boolean hasNextEpisode;
+        long nextReleaseTime;
+        boolean favorite;
+        int rating;
+        /**
+         * Only field written after the show is published, by {@link #markShown}.
+         */
+        volatile long lastShownMillis;
+
+        Show(int id) {
+            this.id = id;
+        }
+
+        Show(Show show) {
+            this.id = show.id;
+            this.title = show.title;
+            this.network = show.network;
+            this.poster = show.poster;
+            this.hidden = show.hidden;
+            this.lastEdited = show.lastEdited;
+            this.hasNextEpisode = show.hasNextEpisode;
+            this.nextReleaseTime = show.nextReleaseTime;
+            this.favorite = show.favorite;
+            this.rating = show.rating;
+            this.lastShownMillis = show.lastShownMillis;
+        }
+
+        /**
+         * Takes over the SeriesGuide columns of {@code row}.
+         *
+         * @return whether any of them changed.
+         */
+        boolean update(ShowRow row) {
+            boolean next = !TextUtils.isEmpty(row.nextEpisode);
+            boolean changed = lastEdited != row.lastEdited
+                    || hidden != row.hidden
+                    || hasNextEpisode != next
+                    || nextReleaseTime != row.nextReleaseTime
+                    || favorite != row.favorite
+                    || rating != row.rating
+                    || !TextUtils.equals(title, row.title)
+                    || !TextUtils.equals(network, row.network)
+                    || !TextUtils.equals(poster, row.poster);
+            title = row.title;
+            network = row.network;
+            poster = row.poster;
+            hidden = row.hidden;
+            lastEdited = row.lastEdited;
+            hasNextEpisode = next;
+            nextReleaseTime = row.nextReleaseTime;
+            favorite = row.favorite;
+            rating = row.rating;
+            return changed;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getNetwork() {
+            return network;
+        }
+
+        public String getPoster() {
+            return poster;
+        }
+
+        public boolean isHidden() {
+            return hidden;
+        }
+
+        public long getNextReleaseTime() {
+            return nextReleaseTime;
+        }
+
+        public boolean isFavorite() {
+            return favorite;
+        }
+
+        /**
+         * Returns the user rating from 1 to 10, or 0 if the show is not rated.
+         */
+        public int getRating() {
+            return rating;
+        }
+
+        /**
+         * Returns when an artwork of the show was last published, or 0 if never.
+         */
+        public long getLastShownMillis() {
+            return lastShownMillis;
+        }
+    }
+
+    public static final class Episode {
+        final int id;
+        long releaseTime;
+        int showId;
+        boolean watched;
+
+        Episode(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public long getReleaseTime() {
+            return releaseTime;
+        }
+
+        public int getShowId() {
+            return showId;
+        }
+
+        public boolean isWatched() {
+            return watched;
+        }
+    }
+}
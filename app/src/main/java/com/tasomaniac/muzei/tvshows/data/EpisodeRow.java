@@ -0,0 +1,61 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+/**
+ * Reusable row of an {@link Episodes} query, filled by {@link Mapper}. Numeric only, so filling it
+ * allocates nothing.
+ */
+public final class EpisodeRow {
+
+    public int id;
+    public long releaseTime;
+    public int showId;
+    public boolean watched;
+    public long lastEdited;
+
+    public static final class Mapper extends CursorMapper<EpisodeRow> {
+        private final int id;
+        private final int releaseTime;
+        private final int showId;
+        private final int watched;
+        private final int lastEdited;
+
+        public Mapper(@NonNull Projection projection) {
+            id = projection.indexOf(Episodes._ID);
+            releaseTime = projection.indexOf(Episodes.FIRSTAIREDMS);
+            showId = projection.indexOf(Shows.REF_SHOW_ID);
+            watched = projection.indexOf(Episodes.WATCHED);
+            lastEdited = projection.indexOf(Episodes.LAST_EDITED);
+        }
+
+        @NonNull
+        @Override
+        public EpisodeRow newRow() {
+            return new EpisodeRow();
+        }
+
+        @Override
+        public void fill(@NonNull Cursor cursor, @NonNull EpisodeRow row) {
+            if (id >= 0) {
+                row.id = cursor.getInt(id);
+            }
+            if (releaseTime >= 0) {
+                row.releaseTime = cursor.getLong(releaseTime);
+            }
+            if (showId >= 0) {
+                row.showId = cursor.getInt(showId);
+            }
+            if (watched >= 0) {
+                row.watched = cursor.getInt(watched) == 1;
+            }
+            if (lastEdited >= 0) {
+                row.lastEdited = cursor.getLong(lastEdited);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.util.Spans;
+
+/**
+ * Pages through an episode query in ({@link Episodes#FIRSTAIREDMS}, {@link Episodes#_ID}) order.
+ *
+ * <p> Every page is capped with a {@code LIMIT} pushed into the provider through the sort order
+ * and the next page continues after the last key seen, so cursor window fill and parcel size stay
+ * constant regardless of the library size.
+ */
+final class KeysetQuery {
+
+    static final int PAGE_SIZE = 500;
+
+    private static final String SELECTION_AFTER_KEY = "(" + Episodes.FIRSTAIREDMS + ">? OR ("
+            + Episodes.FIRSTAIREDMS + "=? AND " + Episodes._ID + ">?))";
+
+    private static final String SORT_ORDER = Episodes.FIRSTAIREDMS + " ASC," + Episodes._ID
+            + " ASC LIMIT " + PAGE_SIZE;
+
+    /**
+     * Columns of the key, every projection of a keyset query declares them.
+     */
+    static final String[] KEY_COLUMNS = new String[]{Episodes.FIRSTAIREDMS, Episodes._ID};
+
+    private final ContentResolver contentResolver;
+    private final Uri uri;
+    private final String[] projection;
+    private final int releaseTimeColumn;
+    private final int idColumn;
+
+    /**
+     * @param projection Must contain the {@link #KEY_COLUMNS}.
+     */
+    KeysetQuery(@NonNull ContentResolver contentResolver, @NonNull Uri uri,
+                @NonNull Projection projection) {
+        this.contentResolver = contentResolver;
+        this.uri = uri;
+        this.projection = projection.columns();
+        this.releaseTimeColumn = projection.index(Episodes.FIRSTAIREDMS);
+        this.idColumn = projection.index(Episodes._ID);
+    }
+
+    /**
+     * Runs the query page by page and hands every row, mapped by {@code mapper}, to the visitor.
+     * One row object serves all pages. Stops when the visitor asks to.
+     *
+     * @throws IllegalArgumentException if the provider is not available.
+     */
+    <R> void run(@NonNull String selection, @NonNull String[] selectionArgs,
+                 @NonNull CursorMapper<R> mapper,
+                 @NonNull CursorMapper.Visitor<? super R> visitor) {
+        // Built once, only the trailing key arguments change from page to page.
+        String pagedSelection = "(" + selection + ") AND " + SELECTION_AFTER_KEY;
+        String[] pagedArgs = new String[selectionArgs.length + 3];
+        System.arraycopy(selectionArgs, 0, pagedArgs, 0, selectionArgs.length);
+
+        R row = mapper.newRow();
+        Page<R> page = new Page<>(visitor);
+        boolean firstPage = true;
+        while (true) {
+            long queryStart = Spans.start();
+            Cursor cursor = contentResolver.query(uri, projection,
+                    firstPage ? selection : pagedSelection,
+                    firstPage ? selectionArgs : pagedArgs,
+                    SORT_ORDER);
+            Spans.end(Spans.PROVIDER_QUERY, queryStart);
+            if (cursor == null) {
+                throw new IllegalArgumentException("Series Guide episodes are not available");
+            }
+
+            page.start(cursor);
+            boolean completed;
+            long walkStart = Spans.start();
+            try {
+                completed = mapper.forEach(cursor, row, page);
+            } finally {
+                cursor.close();
+                Spans.end(Spans.CURSOR_WALK, walkStart);
+            }
+
+            if (!completed || page.count < PAGE_SIZE) {
+                return;
+            }
+            firstPage = false;
+            String releaseTimeKey = String.valueOf(page.lastReleaseTime);
+            pagedArgs[selectionArgs.length] = releaseTimeKey;
+            pagedArgs[selectionArgs.length + 1] = releaseTimeKey;
+            pagedArgs[selectionArgs.length + 2] = String.valueOf(page.lastId);
+        }
+    }
+
+    /**
+     * Counts the rows of a page and remembers the key of the last one.
+     */
+    private final class Page<R> implements CursorMapper.Visitor<R> {
+        private final CursorMapper.Visitor<? super R> visitor;
+        private Cursor cursor;
+
+        int count;
+        long lastReleaseTime;
+        long lastId;
+
+        Page(CursorMapper.Visitor<? super R> visitor) {
+            this.visitor = visitor;
+        }
+
+        void start(Cursor cursor) {
+            this.cursor = cursor;
+            count = 0;
+        }
+
+        @Override
+        public boolean visit(@NonNull R row) {
+            count++;
+            lastReleaseTime = cursor.getLong(releaseTimeColumn);
+            lastId = cursor.getLong(idColumn);
+            return visitor.visit(row);
+        }
+    }
+}
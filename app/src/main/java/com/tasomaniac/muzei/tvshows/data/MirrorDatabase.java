@@ -0,0 +1,124 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Episodes;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Movies;
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+/**
+ * In-app copy of the few SeriesGuide shows, episodes and watchlist movies columns the art source
+ * reads, kept current by {@link EpisodeIndex}.
+ *
+ * <p> Columns carry the SeriesGuide names, so the same {@link Projection}s and
+ * {@link CursorMapper}s read the provider and the mirror. Episodes carry the hidden flag of their
+ * show, so the covering index answers the candidate queries without touching the table.
+ */
+final class MirrorDatabase extends SQLiteOpenHelper {
+
+    static final String NAME = "seriesguide_mirror.db";
+
+    /**
+     * Everything in here can be synced again, so upgrades start over.
+     */
+    private static final int VERSION = 1;
+
+    interface Tables {
+        String SHOWS = "shows";
+        String EPISODES = "episodes";
+        String MOVIES = "movies";
+        String SYNC_STATE = "sync_state";
+    }
+
+    /**
+     * Not in SeriesGuide, when an artwork of the show was last published.
+     */
+    static final String LAST_SHOWN = "last_shown";
+
+    interface SyncState {
+        String KEY = "key";
+        String VALUE = "value";
+
+        String EPISODE_WATERMARK = "episode_watermark";
+        String LAST_SYNC = "last_sync";
+        String LAST_REBUILD = "last_rebuild";
+    }
+
+    private static final String CREATE_SHOWS = "CREATE TABLE " + Tables.SHOWS + " ("
+            + Shows._ID + " INTEGER PRIMARY KEY,"
+            + Shows.TITLE + " TEXT,"
+            + Shows.NETWORK + " TEXT,"
+            + Shows.POSTER + " TEXT,"
+            + Shows.HIDDEN + " INTEGER NOT NULL DEFAULT 0,"
+            + Shows.LASTEDIT + " INTEGER NOT NULL DEFAULT 0,"
+            + Shows.NEXTEPISODE + " TEXT,"
+            + Shows.NEXTAIRDATEMS + " INTEGER NOT NULL DEFAULT 0,"
+            + Shows.FAVORITE + " INTEGER NOT NULL DEFAULT 0,"
+            + Shows.RATING_USER + " INTEGER NOT NULL DEFAULT 0,"
+            + LAST_SHOWN + " INTEGER NOT NULL DEFAULT 0)";
+
+    private static final String CREATE_EPISODES = "CREATE TABLE " + Tables.EPISODES + " ("
+            + Episodes._ID + " INTEGER PRIMARY KEY,"
+            + Episodes.FIRSTAIREDMS + " INTEGER NOT NULL,"
+            + Shows.REF_SHOW_ID + " INTEGER NOT NULL,"
+            + Episodes.WATCHED + " INTEGER NOT NULL DEFAULT 0,"
+            + Shows.HIDDEN + " INTEGER NOT NULL DEFAULT 0)";
+
+    /**
+     * Covers the candidate queries: a release time range, filtered by the watched and hidden flags,
+     * returning the show. The episode id comes with the row id.
+     */
+    private static final String CREATE_EPISODES_RELEASE_INDEX = "CREATE INDEX episodes_release ON "
+            + Tables.EPISODES + " (" + Episodes.FIRSTAIREDMS + "," + Episodes.WATCHED + ","
+            + Shows.HIDDEN + "," + Shows.REF_SHOW_ID + ")";
+
+    /**
+     * Hiding a show updates all of its episodes.
+     */
+    private static final String CREATE_EPISODES_SHOW_INDEX = "CREATE INDEX episodes_show ON "
+            + Tables.EPISODES + " (" + Shows.REF_SHOW_ID + ")";
+
+    private static final String CREATE_MOVIES = "CREATE TABLE " + Tables.MOVIES + " ("
+            + Movies.TMDB_ID + " INTEGER PRIMARY KEY,"
+            + Movies.TITLE + " TEXT,"
+            + Movies.POSTER + " TEXT,"
+            + Movies.RELEASED_UTC_MS + " INTEGER NOT NULL DEFAULT 0,"
+            + Movies.RATING_USER + " INTEGER NOT NULL DEFAULT 0,"
+            + Movies.WATCHED + " INTEGER NOT NULL DEFAULT 0)";
+
+    private static final String CREATE_SYNC_STATE = "CREATE TABLE " + Tables.SYNC_STATE + " ("
+            + SyncState.KEY + " TEXT PRIMARY KEY,"
+            + SyncState.VALUE + " INTEGER NOT NULL)";
+
+    /**
+     * @param name File name of the database, null for an in-memory one. Only a file logs ahead,
+     *             which lets readers run while a sync writes.
+     */
+    MirrorDatabase(@NonNull Context context, @Nullable String name) {
+        super(context, name, null, VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(CREATE_SHOWS);
+        db.execSQL(CREATE_EPISODES);
+        db.execSQL(CREATE_EPISODES_RELEASE_INDEX);
+        db.execSQL(CREATE_EPISODES_SHOW_INDEX);
+        db.execSQL(CREATE_MOVIES);
+        db.execSQL(CREATE_SYNC_STATE);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.SHOWS);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.EPISODES);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.MOVIES);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.SYNC_STATE);
+        onCreate(db);
+    }
+}
@@ -0,0 +1,65 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Movies;
+
+/**
+ * Reusable row of a {@link Movies} query, filled by {@link Mapper}.
+ */
+public final class MovieRow {
+
+    public int tmdbId;
+    public String title;
+    public String poster;
+    public long releasedMillis;
+    public int rating;
+    public boolean watched;
+
+    public static final class Mapper extends CursorMapper<MovieRow> {
+        private final int tmdbId;
+        private final int title;
+        private final int poster;
+        private final int releasedMillis;
+        private final int rating;
+        private final int watched;
+
+        public Mapper(@NonNull Projection projection) {
+            tmdbId = projection.indexOf(Movies.TMDB_ID);
+            title = projection.indexOf(Movies.TITLE);
+            poster = projection.indexOf(Movies.POSTER);
+            releasedMillis = projection.indexOf(Movies.RELEASED_UTC_MS);
+            rating = projection.indexOf(Movies.RATING_USER);
+            watched = projection.indexOf(Movies.WATCHED);
+        }
+
+        @NonNull
+        @Override
+        public MovieRow newRow() {
+            return new MovieRow();
+        }
+
+        @Override
+        public void fill(@NonNull Cursor cursor, @NonNull MovieRow row) {
+            if (tmdbId >= 0) {
+                row.tmdbId = cursor.getInt(tmdbId);
+            }
+            if (title >= 0) {
+                row.title = cursor.getString(title);
+            }
+            if (poster >= 0) {
+                row.poster = cursor.getString(poster);
+            }
+            if (releasedMillis >= 0) {
+                row.releasedMillis = cursor.getLong(releasedMillis);
+            }
+            if (rating >= 0) {
+                row.rating = cursor.getInt(rating);
+            }
+            if (watched >= 0) {
+                row.watched = cursor.getInt(watched) == 1;
+            }
+        }
+    }
+}
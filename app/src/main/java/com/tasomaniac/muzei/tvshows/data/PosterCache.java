@@ -0,0 +1,313 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.tasomaniac.muzei.tvshows.BuildConfig;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import timber.log.Timber;
+
+/**
+ * Size bounded, least recently used disk cache of show posters.
+ *
+ * <p> Posters are prefetched on a background priority thread, one at a time, and published as
+ * {@code content://} URIs served by {@link PosterProvider}, so Muzei does not need a cold network
+ * fetch on rotation and cached posters keep working offline. The art source hands posters over
+ * and returns, its later commands do not wait for downloads.
+ */
+public class PosterCache {
+
+    public static final String AUTHORITY = BuildConfig.APPLICATION_ID + ".posters";
+
+    private static final String DIRECTORY_NAME = "posters";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 20 * 1000;
+
+    private final File directory;
+    private final String baseUrl;
+    private final long maxSizeBytes;
+    private final Executor executor;
+
+    /**
+     * File name to size, in access order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private boolean loaded;
+
+    /**
+     * File names queued for prefetching, so a poster is not queued twice.
+     */
+    private final Set<String> pending = new HashSet<>();
+
+    /**
+     * @param baseUrl Prefix that turns a poster path into a downloadable URL.
+     */
+    public PosterCache(@NonNull Context context, @NonNull String baseUrl, long maxSizeBytes) {
+        this(context, baseUrl, maxSizeBytes, Executors.newSingleThreadExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "PosterCache");
+                    }
+                }));
+    }
+
+    /**
+     * @param executor Runs the prefetches.
+     */
+    public PosterCache(@NonNull Context context, @NonNull String baseUrl, long maxSizeBytes,
+                       @NonNull Executor executor) {
+        this.directory = getDirectory(context);
+        this.baseUrl = baseUrl;
+        this.maxSizeBytes = maxSizeBytes;
+        this.executor = executor;
+    }
+
+    static File getDirectory(Context context) {
+        return new File(context.getCacheDir(), DIRECTORY_NAME);
+    }
+
+    /**
+     * Returns whether {@code name} is a cached poster in {@link #getDirectory}, not a download in
+     * progress or anything outside of the directory.
+     */
+    static boolean isPosterName(@Nullable String name) {
+        return !TextUtils.isEmpty(name) && !name.contains(File.separator)
+                && !name.startsWith(".") && !name.endsWith(TEMP_SUFFIX);
+    }
+
+    /**
+     * Returns the remote URL of the poster.
+     */
+    @NonNull
+    public Uri getRemoteUri(@NonNull String posterPath) {
+        return Uri.parse(remoteUrl(posterPath));
+    }
+
+    /**
+     * Poster paths are relative to the base URL, except for absolute URLs, e.g. of movie posters.
+     */
+    private String remoteUrl(String posterPath) {
+        if (posterPath.startsWith("http://") || posterPath.startsWith("https://")) {
+            return posterPath;
+        }
+        return baseUrl + posterPath;
+    }
+
+    /**
+     * Returns the URI to publish for the poster: served from the cache if it is there, the remote
+     * URL otherwise.
+     */
+    @NonNull
+    public synchronized Uri getUri(@NonNull String posterPath) {
+        ensureLoaded();
+        String name = fileName(posterPath);
+        Long size = entries.get(name);
+        if (size != null && !new File(directory, name).exists()) {
+            // Cleared by the system behind our back.
+            entries.remove(name);
+            sizeBytes -= size;
+        } else if (size != null) {
+            return new Uri.Builder()
+                    .scheme("content")
+                    .authority(AUTHORITY)
+                    .appendPath(name)
+                    .build();
+        }
+        return getRemoteUri(posterPath);
+    }
+
+    /**
+     * Queues the poster for download into the cache unless it is already there or queued. Returns
+     * right away.
+     */
+    public void prefetch(@Nullable final String posterPath) {
+        if (TextUtils.isEmpty(posterPath)) {
+            return;
+        }
+        final String name = fileName(posterPath);
+        synchronized (this) {
+            if (!pending.add(name)) {
+                return;
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetch(posterPath, name);
+                } finally {
+                    synchronized (PosterCache.this) {
+                        pending.remove(name);
+                    }
+                }
+            }
+        });
+    }
+
+    private void fetch(String posterPath, String name) {
+        synchronized (this) {
+            ensureLoaded();
+            if (entries.get(name) != null) {
+                return;
+            }
+        }
+
+        File temp = new File(directory, name + TEMP_SUFFIX);
+        try {
+            long size = download(new URL(remoteUrl(posterPath)), temp);
+            File file = new File(directory, name);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not move poster into the cache: " + file);
+            }
+            synchronized (this) {
+                put(name, size);
+                trimToSize();
+            }
+        } catch (IOException e) {
+            Timber.w(e, "Error prefetching poster %s", posterPath);
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    private long download(URL url, File target) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                throw new IOException("Unexpected response " + responseCode + " for " + url);
+            }
+            in = connection.getInputStream();
+            out = new FileOutputStream(target);
+            byte[] buffer = new byte[8192];
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                size += read;
+            }
+            return size;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+            connection.disconnect();
+        }
+    }
+
+    private void put(String name, long size) {
+        Long previous = entries.put(name, size);
+        if (previous != null) {
+            sizeBytes -= previous;
+        }
+        sizeBytes += size;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            //noinspection ResultOfMethodCallIgnored
+            new File(directory, eldest.getKey()).delete();
+            sizeBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Timber.e("Could not create poster cache directory %s", directory);
+            return;
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Oldest first, so the access order starts out as the modification order.
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            } else {
+                put(file.getName(), file.length());
+            }
+        }
+        trimToSize();
+    }
+
+    static String fileName(String posterPath) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(posterPath.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Column set of a query, built from the columns each of its consumers declares. Columns wanted by
+ * several consumers are queried once, columns nobody declares are not queried at all.
+ *
+ * <p> Column positions are looked up with {@link #index(String)} once, typically into constants
+ * of a query interface, so cursor walks read by position.
+ */
+public final class Projection {
+
+    private final String[] columns;
+
+    private Projection(String[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the columns to pass to the query. Shared, do not modify.
+     */
+    @NonNull
+    public String[] columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the cursor position of {@code column}.
+     *
+     * @throws IllegalArgumentException if no consumer declared the column.
+     */
+    public int index(@NonNull String column) {
+        int index = indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Column not in projection: " + column);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the cursor position of {@code column}, -1 if no consumer declared it.
+     */
+    public int indexOf(@NonNull String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static final class Builder {
+        private final List<String> columns = new ArrayList<>();
+
+        /**
+         * Declares the columns a consumer needs. Already declared columns are skipped.
+         */
+        @NonNull
+        public Builder add(@NonNull String... columns) {
+            for (String column : columns) {
+                if (!this.columns.contains(column)) {
+                    this.columns.add(column);
+                }
+            }
+            return this;
+        }
+
+        @NonNull
+        public Projection build() {
+            return new Projection(columns.toArray(new String[columns.size()]));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import timber.log.Timber;
+
+/**
+ * Tells whether the SeriesGuide provider serves a URI, without querying it.
+ *
+ * <p> The provider is probed with {@link ContentProviderClient#getType(Uri)}, which neither opens
+ * the database nor builds a cursor. Only positive verdicts are cached, for the installed
+ * SeriesGuide package. Every check compares its update time, version code and enabled state
+ * with those the verdicts were cached for, and drops them when the package was reinstalled,
+ * updated, disabled or removed in the meantime. The package manager answers that without
+ * starting SeriesGuide, and no receiver has to stay registered for it. A failed probe, e.g. of a
+ * dead SeriesGuide process, is retried on the next check.
+ *
+ * <p> Whether the provider has any rows, e.g. shows were added, needs a query. {@link #hasRows}
+ * reads a single row and caches a positive answer until the package changes or
+ * {@link #invalidateRows} is called on a content change, so checking again without changes does
+ * not touch the provider.
+ */
+public class ProviderHealth {
+
+    public static final String SERIESGUIDE_PACKAGE = "com.battlelancer.seriesguide";
+
+    private final PackageManager packageManager;
+    private final ContentResolver contentResolver;
+
+    /**
+     * The SeriesGuide package the verdicts are cached for, all 0 if none are.
+     */
+    private long lastUpdateTime;
+    private int versionCode;
+    private final Set<Uri> available = new HashSet<>();
+    private final Set<Uri> withRows = new HashSet<>();
+
+    public ProviderHealth(@NonNull PackageManager packageManager,
+                          @NonNull ContentResolver contentResolver) {
+        this.packageManager = packageManager;
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Returns whether SeriesGuide is installed and its provider handles {@code uri}. Once the
+     * provider handled it, it is not probed again until the package changes.
+     */
+    public synchronized boolean isAvailable(@NonNull Uri uri) {
+        PackageInfo packageInfo = getPackageInfo();
+        if (packageInfo == null || !packageInfo.applicationInfo.enabled) {
+            invalidate();
+            return false;
+        }
+        if (packageInfo.lastUpdateTime != lastUpdateTime
+                || packageInfo.versionCode != versionCode) {
+            invalidate();
+            lastUpdateTime = packageInfo.lastUpdateTime;
+            versionCode = packageInfo.versionCode;
+        }
+
+        if (available.contains(uri)) {
+            return true;
+        }
+        if (probe(uri)) {
+            available.add(uri);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether {@link #isAvailable} and the provider has at least one row at {@code uri}.
+     * Only an empty answer reads from the provider again on the next check.
+     */
+    public boolean hasRows(@NonNull Uri uri) {
+        if (!isAvailable(uri)) {
+            return false;
+        }
+        synchronized (this) {
+            if (withRows.contains(uri)) {
+                return true;
+            }
+        }
+        // Not under the lock, a slow provider does not hold up the art source.
+        if (queryHasRows(uri)) {
+            synchronized (this) {
+                withRows.add(uri);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets whether the provider has rows at {@code uri}, for when its content changed.
+     */
+    public synchronized void invalidateRows(@NonNull Uri uri) {
+        withRows.remove(uri);
+    }
+
+    /**
+     * Forgets all verdicts, so the next checks probe the provider again.
+     */
+    private void invalidate() {
+        lastUpdateTime = 0;
+        versionCode = 0;
+        available.clear();
+        withRows.clear();
+    }
+
+    private PackageInfo getPackageInfo() {
+        try {
+            return packageManager.getPackageInfo(SERIESGUIDE_PACKAGE, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private boolean queryHasRows(Uri uri) {
+        Cursor cursor = null;
+        try {
+            cursor = contentResolver.query(uri,
+                    new String[]{BaseColumns._ID}, null, null, BaseColumns._ID + " LIMIT 1");
+            return cursor != null && cursor.getCount() > 0;
+        } catch (SQLiteException | SecurityException e) {
+            Timber.e(e, "Error accessing Series Guide database");
+            return false;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private boolean probe(Uri uri) {
+        ContentProviderClient client = contentResolver.acquireUnstableContentProviderClient(uri);
+        if (client == null) {
+            return false;
+        }
+        try {
+            return client.getType(uri) != null;
+        } catch (RemoteException | RuntimeException e) {
+            // Unknown URIs throw in SeriesGuide, so does a crashing provider process.
+            Timber.w(e, "Series Guide provider does not handle %s", uri);
+            return false;
+        } finally {
+            client.release();
+        }
+    }
+}
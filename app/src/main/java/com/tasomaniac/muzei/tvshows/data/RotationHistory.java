@@ -0,0 +1,197 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.AtomicFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import timber.log.Timber;
+
+/**
+ * Persistent, fixed size history of the most recently published episodes and shows.
+ *
+ * <p> Keys are kept in a {@code long} ring buffer in publish order, and counted in an open
+ * addressing hash table, so membership is a constant time lookup without boxing and selection can
+ * skip recent artworks without excluding them in the provider query.
+ */
+public class RotationHistory {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * Show and movie keys are tagged in the upper half, so they never collide with episode keys.
+     */
+    private static final long SHOW_TAG = 1L << 32;
+    private static final long MOVIE_TAG = 2L << 32;
+
+    private final AtomicFile file;
+
+    /**
+     * Keys in publish order, the oldest at {@link #head} once the history is full.
+     */
+    private final long[] ring;
+    private int head;
+    private int size;
+
+    /**
+     * Linear probing table of at least twice the capacity, so probes stay short.
+     */
+    private final long[] keys;
+    private final int[] counts;
+    private final int mask;
+
+    private boolean loaded;
+
+    public RotationHistory(@NonNull File file, int capacity) {
+        this.file = new AtomicFile(file);
+        this.ring = new long[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 4 - 1);
+        this.keys = new long[tableSize];
+        this.counts = new int[tableSize];
+        this.mask = tableSize - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public static long episodeKey(int episodeId) {
+        return episodeId & 0xffffffffL;
+    }
+
+    public static long showKey(int showId) {
+        return SHOW_TAG | (showId & 0xffffffffL);
+    }
+
+    public static long movieKey(int tmdbId) {
+        return MOVIE_TAG | (tmdbId & 0xffffffffL);
+    }
+
+    public synchronized boolean contains(long key) {
+        ensureLoaded();
+        return counts[slotOf(key)] > 0;
+    }
+
+    /**
+     * Records the key as most recent, evicting the oldest one if the history is full, and
+     * persists the history.
+     */
+    public synchronized void add(long key) {
+        ensureLoaded();
+        push(key);
+        save();
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return size;
+    }
+
+    private void push(long key) {
+        if (ring.length == 0) {
+            return;
+        }
+        if (size == ring.length) {
+            remove(ring[head]);
+            ring[head] = key;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[(head + size) % ring.length] = key;
+            size++;
+        }
+        int slot = slotOf(key);
+        keys[slot] = key;
+        counts[slot]++;
+    }
+
+    /**
+     * Returns the slot holding the key, or the empty slot it would go into.
+     */
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void remove(long key) {
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY || --counts[slot] > 0) {
+            return;
+        }
+        // Backward shift deletion: move later keys of the probe run into the gap.
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            // The key may move into the gap unless its home lies cyclically in (gap, next].
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        counts[gap] = 0;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(file.openRead());
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            // Oldest first, so a smaller capacity keeps the most recent ones.
+            for (int i = in.readInt(); i > 0; i--) {
+                push(in.readLong());
+            }
+        } catch (FileNotFoundException ignored) {
+            // Nothing published yet.
+        } catch (IOException e) {
+            Timber.e(e, "Error reading rotation history");
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void save() {
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(ring[(head + i) % ring.length]);
+            }
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Timber.e(e, "Error writing rotation history");
+            file.failWrite(stream);
+        }
+    }
+}
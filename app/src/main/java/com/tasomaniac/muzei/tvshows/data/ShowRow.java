@@ -0,0 +1,101 @@
+package com.tasomaniac.muzei.tvshows.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.tasomaniac.muzei.tvshows.data.SeriesGuideContract.Shows;
+
+/**
+ * Reusable row of a {@link Shows} query, filled by {@link Mapper}.
+ */
+public final class ShowRow {
+
+    public int id;
+    public String title;
+    public String network;
+    public String poster;
+    public boolean hidden;
+    public long lastEdited;
+    /**
+     * Id of the next episode, empty if there is none.
+     */
+    public String nextEpisode;
+    public long nextReleaseTime;
+    public boolean favorite;
+    public int rating;
+    /**
+     * Only in the {@link MirrorDatabase}.
+     */
+    public long lastShownMillis;
+
+    public static final class Mapper extends CursorMapper<ShowRow> {
+        private final int id;
+        private final int title;
+        private final int network;
+        private final int poster;
+        private final int hidden;
+        private final int lastEdited;
+        private final int nextEpisode;
+        private final int nextReleaseTime;
+        private final int favorite;
+        private final int rating;
+        private final int lastShownMillis;
+
+        public Mapper(@NonNull Projection projection) {
+            id = projection.indexOf(Shows._ID);
+            title = projection.indexOf(Shows.TITLE);
+            network = projection.indexOf(Shows.NETWORK);
+            poster = projection.indexOf(Shows.POSTER);
+            hidden = projection.indexOf(Shows.HIDDEN);
+            lastEdited = projection.indexOf(Shows.LASTEDIT);
+            nextEpisode = projection.indexOf(Shows.NEXTEPISODE);
+            nextReleaseTime = projection.indexOf(Shows.NEXTAIRDATEMS);
+            favorite = projection.indexOf(Shows.FAVORITE);
+            rating = projection.indexOf(Shows.RATING_USER);
+            lastShownMillis = projection.indexOf(MirrorDatabase.LAST_SHOWN);
+        }
+
+        @NonNull
+        @Override
+        public ShowRow newRow() {
+            return new ShowRow();
+        }
+
+        @Override
+        public void fill(@NonNull Cursor cursor, @NonNull ShowRow row) {
+            if (id >= 0) {
+                row.id = cursor.getInt(id);
+            }
+            if (title >= 0) {
+                row.title = cursor.getString(title);
+            }
+            if (network >= 0) {
+                row.network = cursor.getString(network);
+            }
+            if (poster >= 0) {
+                row.poster = cursor.getString(poster);
+            }
+            if (hidden >= 0) {
+                row.hidden = cursor.getInt(hidden) == 1;
+            }
+            if (lastEdited >= 0) {
+                row.lastEdited = cursor.getLong(lastEdited);
+            }
+            if (nextEpisode >= 0) {
+                row.nextEpisode = cursor.getString(nextEpisode);
+            }
+            if (nextReleaseTime >= 0) {
+                row.nextReleaseTime = cursor.getLong(nextReleaseTime);
+            }
+            if (favorite >= 0) {
+                row.favorite = cursor.getInt(favorite) == 1;
+            }
+            if (rating >= 0) {
+                row.rating = cursor.getInt(rating);
+            }
+            if (lastShownMillis >= 0) {
+                row.lastShownMillis = cursor.getLong(lastShownMillis);
+            }
+        }
+    }
+}
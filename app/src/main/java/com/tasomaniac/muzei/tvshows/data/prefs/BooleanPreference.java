@@ -1,36 +1,35 @@
 package com.tasomaniac.muzei.tvshows.data.prefs;
 
-import android.content.SharedPreferences;
 import android.support.annotation.NonNull;
 
 public class BooleanPreference {
-  private final SharedPreferences preferences;
+  private final PreferenceSnapshot snapshot;
   private final String key;
   private final boolean defaultValue;
 
-  public BooleanPreference(@NonNull SharedPreferences preferences, @NonNull String key) {
-    this(preferences, key, false);
+  public BooleanPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key) {
+    this(snapshot, key, false);
   }
 
-  public BooleanPreference(@NonNull SharedPreferences preferences, @NonNull String key, boolean defaultValue) {
-    this.preferences = preferences;
+  public BooleanPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key, boolean defaultValue) {
+    this.snapshot = snapshot;
     this.key = key;
     this.defaultValue = defaultValue;
   }
 
   public boolean get() {
-    return preferences.getBoolean(key, defaultValue);
+    return snapshot.getBoolean(key, defaultValue);
   }
 
   public boolean isSet() {
-    return preferences.contains(key);
+    return snapshot.contains(key);
   }
 
   public void set(boolean value) {
-    preferences.edit().putBoolean(key, value).apply();
+    snapshot.getPreferences().edit().putBoolean(key, value).apply();
   }
 
   public void delete() {
-    preferences.edit().remove(key).apply();
+    snapshot.getPreferences().edit().remove(key).apply();
   }
 }
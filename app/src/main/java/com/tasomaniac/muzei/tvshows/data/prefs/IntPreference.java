@@ -0,0 +1,35 @@
+package com.tasomaniac.muzei.tvshows.data.prefs;
+
+import android.support.annotation.NonNull;
+
+public class IntPreference {
+  private final PreferenceSnapshot snapshot;
+  private final String key;
+  private final int defaultValue;
+
+  public IntPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key) {
+    this(snapshot, key, 0);
+  }
+
+  public IntPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key, int defaultValue) {
+    this.snapshot = snapshot;
+    this.key = key;
+    this.defaultValue = defaultValue;
+  }
+
+  public int get() {
+    return snapshot.getInt(key, defaultValue);
+  }
+
+  public boolean isSet() {
+    return snapshot.contains(key);
+  }
+
+  public void set(int value) {
+    snapshot.getPreferences().edit().putInt(key, value).apply();
+  }
+
+  public void delete() {
+    snapshot.getPreferences().edit().remove(key).apply();
+  }
+}
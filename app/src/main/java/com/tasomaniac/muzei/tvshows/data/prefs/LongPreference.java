@@ -0,0 +1,35 @@
+package com.tasomaniac.muzei.tvshows.data.prefs;
+
+import android.support.annotation.NonNull;
+
+public class LongPreference {
+  private final PreferenceSnapshot snapshot;
+  private final String key;
+  private final long defaultValue;
+
+  public LongPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key) {
+    this(snapshot, key, 0);
+  }
+
+  public LongPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key, long defaultValue) {
+    this.snapshot = snapshot;
+    this.key = key;
+    this.defaultValue = defaultValue;
+  }
+
+  public long get() {
+    return snapshot.getLong(key, defaultValue);
+  }
+
+  public boolean isSet() {
+    return snapshot.contains(key);
+  }
+
+  public void set(long value) {
+    snapshot.getPreferences().edit().putLong(key, value).apply();
+  }
+
+  public void delete() {
+    snapshot.getPreferences().edit().remove(key).apply();
+  }
+}
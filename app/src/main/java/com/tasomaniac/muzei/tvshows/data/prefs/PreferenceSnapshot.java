@@ -0,0 +1,93 @@
+package com.tasomaniac.muzei.tvshows.data.prefs;
+
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable copy of all values in a {@link SharedPreferences}, read once and swapped atomically
+ * whenever a value changes. Reads never touch the preferences and never block once the first
+ * snapshot is taken.
+ */
+public class PreferenceSnapshot {
+  private final SharedPreferences preferences;
+  private final AtomicReference<Map<String, ?>> values = new AtomicReference<>();
+
+  /**
+   * Preferences only keep weak references to their listeners.
+   */
+  private final SharedPreferences.OnSharedPreferenceChangeListener listener =
+      new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+          values.set(copyOf(preferences));
+        }
+      };
+
+  public PreferenceSnapshot(@NonNull SharedPreferences preferences) {
+    this.preferences = preferences;
+    preferences.registerOnSharedPreferenceChangeListener(listener);
+  }
+
+  /**
+   * Returns the preferences backing this snapshot, for writing.
+   */
+  @NonNull public SharedPreferences getPreferences() {
+    return preferences;
+  }
+
+  public boolean contains(@NonNull String key) {
+    return get().containsKey(key);
+  }
+
+  public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+    Object value = get().get(key);
+    return value instanceof Boolean ? (Boolean) value : defaultValue;
+  }
+
+  public int getInt(@NonNull String key, int defaultValue) {
+    Object value = get().get(key);
+    return value instanceof Integer ? (Integer) value : defaultValue;
+  }
+
+  public long getLong(@NonNull String key, long defaultValue) {
+    Object value = get().get(key);
+    return value instanceof Long ? (Long) value : defaultValue;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable public Set<String> getStringSet(@NonNull String key,
+      @Nullable Set<String> defaultValue) {
+    Object value = get().get(key);
+    return value instanceof Set ? (Set<String>) value : defaultValue;
+  }
+
+  private Map<String, ?> get() {
+    Map<String, ?> snapshot = values.get();
+    if (snapshot == null) {
+      // First read, blocks until the preferences are loaded. A concurrent change wins.
+      values.compareAndSet(null, copyOf(preferences));
+      snapshot = values.get();
+    }
+    return snapshot;
+  }
+
+  private static Map<String, ?> copyOf(SharedPreferences preferences) {
+    Map<String, Object> copy = new HashMap<>();
+    for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof Set) {
+        //noinspection unchecked
+        value = Collections.unmodifiableSet((Set<String>) value);
+      }
+      copy.put(entry.getKey(), value);
+    }
+    return Collections.unmodifiableMap(copy);
+  }
+}
@@ -0,0 +1,43 @@
+package com.tasomaniac.muzei.tvshows.data.prefs;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Set;
+
+public class StringSetPreference {
+  private final PreferenceSnapshot snapshot;
+  private final String key;
+  private final Set<String> defaultValue;
+
+  public StringSetPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key) {
+    this(snapshot, key, Collections.<String>emptySet());
+  }
+
+  public StringSetPreference(@NonNull PreferenceSnapshot snapshot, @NonNull String key,
+      @NonNull Set<String> defaultValue) {
+    this.snapshot = snapshot;
+    this.key = key;
+    this.defaultValue = Collections.unmodifiableSet(defaultValue);
+  }
+
+  /**
+   * Returns an unmodifiable set.
+   */
+  @NonNull public Set<String> get() {
+    //noinspection ConstantConditions
+    return snapshot.getStringSet(key, defaultValue);
+  }
+
+  public boolean isSet() {
+    return snapshot.contains(key);
+  }
+
+  public void set(@NonNull Set<String> value) {
+    snapshot.getPreferences().edit().putStringSet(key, value).apply();
+  }
+
+  public void delete() {
+    snapshot.getPreferences().edit().remove(key).apply();
+  }
+}
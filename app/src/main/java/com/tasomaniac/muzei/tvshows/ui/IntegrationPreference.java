@@ -2,17 +2,13 @@ package com.tasomaniac.muzei.tvshows.ui;
 
 import android.annotation.TargetApi;
 import android.content.ComponentName;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.Build;
 import android.preference.CheckBoxPreference;
-import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.SpannableString;
@@ -22,17 +18,18 @@ import android.util.AttributeSet;
 
 import com.tasomaniac.muzei.tvshows.App;
 import com.tasomaniac.muzei.tvshows.R;
+import com.tasomaniac.muzei.tvshows.data.ProviderHealth;
 import com.tasomaniac.muzei.tvshows.util.AppInstallEnabler;
 import com.tasomaniac.muzei.tvshows.util.ContentProviderEnabler;
+import com.tasomaniac.muzei.tvshows.util.PackageEventBus;
 
 import javax.inject.Inject;
 
-import timber.log.Timber;
-
 public class IntegrationPreference extends CheckBoxPreference {
 
     @Inject PackageManager packageManager;
-    @Inject ContentResolver contentResolver;
+    @Inject ProviderHealth providerHealth;
+    @Inject PackageEventBus packageEventBus;
 
     AppInstallEnabler appInstallEnabler;
     ContentProviderEnabler contentProviderEnabler;
@@ -88,7 +85,7 @@ public class IntegrationPreference extends CheckBoxPreference {
 
         setDisableDependentsState(true);
 
-        appInstallEnabler = new AppInstallEnabler(context, this);
+        appInstallEnabler = new AppInstallEnabler(packageEventBus, this);
         contentProviderEnabler = new ContentProviderEnabler(context, this);
     }
 
@@ -121,10 +118,19 @@ public class IntegrationPreference extends CheckBoxPreference {
         contentProviderEnabler.pause();
     }
 
+    /**
+     * Called when the content at {@link #getExpectedContentUri()} changed, so whether it has rows
+     * is read again.
+     */
+    public void onContentChanged() {
+        providerHealth.invalidateRows(expectedContentUri);
+        checkState();
+    }
+
     public void checkState() {
         if (hasIntent(originalIntent)) {
             if (expectedContentUri != null
-                    && hasTroublesomeProvider(expectedContentUri)) {
+                    && !providerHealth.hasRows(expectedContentUri)) {
                 setSummaryOff(summaryUriMissing);
                 adjustPreference(uriMissingIntent, false);
             } else {
@@ -185,22 +191,6 @@ public class IntegrationPreference extends CheckBoxPreference {
         }
     }
 
-    private boolean hasTroublesomeProvider(@NonNull Uri uri) {
-        Cursor cursor = null;
-        try {
-            cursor = contentResolver.query(uri,
-                    new String[]{BaseColumns._ID}, null, null, null);
-            return cursor == null || cursor.getCount() == 0;
-        } catch (SQLiteException e) {
-            Timber.e(e, "Error accessing Series Guide database");
-            return true;
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-        }
-    }
-
     private boolean hasIntent(@Nullable Intent intent) {
         return intent != null
                 && packageManager.resolveActivity(intent, 0) != null;
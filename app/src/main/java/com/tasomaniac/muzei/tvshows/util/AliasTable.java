@@ -0,0 +1,83 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.support.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * Samples indices proportionally to their weights in constant time, using Vose's alias method.
+ * Building the table is linear in the number of weights.
+ */
+public final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param weights Non-negative weights, at least one of them positive.
+     */
+    public AliasTable(@NonNull double[] weights) {
+        int size = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Invalid weight " + weight);
+            }
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("No positive weight");
+        }
+
+        probability = new double[size];
+        alias = new int[size];
+
+        // Scaled so that the average weight is 1, split into the ones below and above.
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = weights[i] * size / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        // Every small column is topped up to 1 by a large one.
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Left overs are 1 up to rounding errors.
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * Returns an index with a probability proportional to its weight.
+     */
+    public int next(@NonNull Random random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
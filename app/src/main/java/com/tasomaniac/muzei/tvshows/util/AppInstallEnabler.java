@@ -16,50 +16,38 @@
 
 package com.tasomaniac.muzei.tvshows.util;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.support.annotation.NonNull;
 
 import com.tasomaniac.muzei.tvshows.ui.IntegrationPreference;
 
 public final class AppInstallEnabler {
 
-    private final Context mContext;
+    private final PackageEventBus mPackageEventBus;
     private IntegrationPreference mPref;
-    private final IntentFilter mIntentFilter;
 
-    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+    private final PackageEventBus.Listener mListener = new PackageEventBus.Listener() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            // Broadcast receiver is always running on the UI thread here,
+        public void onPackageChanged(@NonNull String packageName) {
+            // Package events are always delivered on the UI thread,
             // so we don't need consider thread synchronization.
             handleStateChanged();
         }
     };
 
-    public AppInstallEnabler(@NonNull Context context,
+    public AppInstallEnabler(@NonNull PackageEventBus packageEventBus,
                              @NonNull IntegrationPreference pref) {
-        mContext = context;
+        mPackageEventBus = packageEventBus;
         mPref = pref;
-
-        mIntentFilter = new IntentFilter();
-        mIntentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
-        mIntentFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
-        mIntentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
-        mIntentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
-        mIntentFilter.addDataScheme("package");
     }
 
     public void resume() {
 
         handleStateChanged();
-        mContext.registerReceiver(mReceiver, mIntentFilter);
+        mPackageEventBus.subscribe(mListener);
     }
 
     public void pause() {
-        mContext.unregisterReceiver(mReceiver);
+        mPackageEventBus.unsubscribe(mListener);
     }
 
     void handleStateChanged() {
@@ -33,7 +33,7 @@ public final class ContentProviderEnabler {
 
         @Override
         public void onChange(boolean selfChange) {
-            handleStateChanged();
+            mPref.onContentChanged();
         }
     };
 
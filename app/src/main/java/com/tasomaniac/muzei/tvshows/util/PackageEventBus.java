@@ -0,0 +1,103 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single package broadcast receiver for the whole process, delivering installs, updates, changes
+ * and removals of the watched packages only.
+ *
+ * <p> Updating an app sends several broadcasts within milliseconds, so events are coalesced and
+ * each changed package is delivered once, {@link #QUIET_PERIOD_MILLIS} after the last broadcast.
+ * Listeners are called on the main thread, in subscription order.
+ */
+public final class PackageEventBus {
+
+    public interface Listener {
+        void onPackageChanged(@NonNull String packageName);
+    }
+
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final Context context;
+    private final Set<String> packageNames;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private boolean registered;
+
+    /**
+     * Changed packages not yet delivered. Only touched on the main thread.
+     */
+    private final Set<String> pendingPackages = new LinkedHashSet<>();
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName != null && packageNames.contains(packageName)) {
+                pendingPackages.add(packageName);
+                handler.removeCallbacks(dispatch);
+                handler.postDelayed(dispatch, QUIET_PERIOD_MILLIS);
+            }
+        }
+    };
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            String[] packages = pendingPackages.toArray(new String[pendingPackages.size()]);
+            pendingPackages.clear();
+            for (String packageName : packages) {
+                for (Listener listener : listeners) {
+                    listener.onPackageChanged(packageName);
+                }
+            }
+        }
+    };
+
+    public PackageEventBus(@NonNull Context context, @NonNull String... packageNames) {
+        this.context = context.getApplicationContext();
+        this.packageNames = new HashSet<>(Arrays.asList(packageNames));
+    }
+
+    /**
+     * Starts delivering events to {@code listener}. The broadcast receiver is only registered
+     * while there are listeners.
+     */
+    public synchronized void subscribe(@NonNull Listener listener) {
+        listeners.add(listener);
+        if (!registered) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiver(receiver, filter);
+            registered = true;
+        }
+    }
+
+    public synchronized void unsubscribe(@NonNull Listener listener) {
+        listeners.remove(listener);
+        if (registered && listeners.isEmpty()) {
+            context.unregisterReceiver(receiver);
+            registered = false;
+        }
+    }
+}
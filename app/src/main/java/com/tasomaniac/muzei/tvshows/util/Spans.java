@@ -0,0 +1,126 @@
+package com.tasomaniac.muzei.tvshows.util;
+
+import android.support.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records the durations of named spans into an in-memory ring buffer per span, so that latency
+ * percentiles are available in release builds through {@code dumpsys}.
+ *
+ * <pre>
+ * long start = Spans.start();
+ * try {
+ *     ...
+ * } finally {
+ *     Spans.end(Spans.PUBLISH_ARTWORK, start);
+ * }
+ * </pre>
+ */
+public final class Spans {
+
+    public static final String APP_INIT = "app_init";
+    public static final String COMPONENT_BUILD = "component_build";
+    public static final String PROVIDER_QUERY = "provider_query";
+    public static final String CURSOR_WALK = "cursor_walk";
+    public static final String BYLINE_FORMAT = "byline_format";
+    public static final String PUBLISH_ARTWORK = "publish_artwork";
+
+    /**
+     * Number of most recent samples kept per span.
+     */
+    static final int CAPACITY = 256;
+
+    private static final Map<String, Samples> SPANS = new LinkedHashMap<>();
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void end(@NonNull String name, long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        Samples samples;
+        synchronized (SPANS) {
+            samples = SPANS.get(name);
+            if (samples == null) {
+                samples = new Samples();
+                SPANS.put(name, samples);
+            }
+        }
+        samples.add(duration);
+    }
+
+    /**
+     * Returns the most recent durations of a span in nanoseconds. They are in recording order
+     * until {@link #CAPACITY} is reached, in no particular order after.
+     */
+    @NonNull
+    public static long[] samples(@NonNull String name) {
+        Samples samples;
+        synchronized (SPANS) {
+            samples = SPANS.get(name);
+        }
+        return samples != null ? samples.snapshot() : new long[0];
+    }
+
+    /**
+     * Prints count, percentiles and maximum of every span in milliseconds.
+     */
+    public static void dump(@NonNull PrintWriter writer) {
+        writer.println("Spans (ms): name count p50 p90 p99 max");
+        Map<String, Samples> spans;
+        synchronized (SPANS) {
+            spans = new LinkedHashMap<>(SPANS);
+        }
+        for (Map.Entry<String, Samples> span : spans.entrySet()) {
+            long[] sorted = span.getValue().snapshot();
+            Arrays.sort(sorted);
+            writer.println(String.format(Locale.US, "  %s %d %.2f %.2f %.2f %.2f",
+                    span.getKey(), span.getValue().getCount(),
+                    millis(percentile(sorted, 50)), millis(percentile(sorted, 90)),
+                    millis(percentile(sorted, 99)), millis(percentile(sorted, 100))));
+        }
+    }
+
+    /**
+     * Nearest rank percentile of sorted samples, 0 if there are none.
+     */
+    static long percentile(@NonNull long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static final class Samples {
+        private final long[] durations = new long[CAPACITY];
+        private int next;
+        private long count;
+
+        synchronized void add(long duration) {
+            durations[next] = duration;
+            next = (next + 1) % CAPACITY;
+            count++;
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(durations, (int) Math.min(count, CAPACITY));
+        }
+    }
+
+    private Spans() {
+    } // No instances.
+}
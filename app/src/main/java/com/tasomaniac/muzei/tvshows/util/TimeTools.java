@@ -16,11 +16,15 @@
 
 package com.tasomaniac.muzei.tvshows.util;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.format.DateFormat;
 import android.text.format.DateUtils;
+import android.util.LongSparseArray;
 
 import com.tasomaniac.muzei.tvshows.R;
 
@@ -34,9 +38,11 @@ import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Helper tools for converting and formatting date times for shows and episodes.
@@ -55,10 +61,95 @@ public class TimeTools {
     private static final String TIMEZONE_ID_US_ARIZONA = "America/Phoenix";
     private static final String TIMEZONE_ID_US_PACIFIC = "America/Los_Angeles";
 
-    private static final DateTimeFormatter DATE_TIME_FORMATTER_UTC
-            = ISODateTimeFormat.dateTime().withZoneUTC();
+    /**
+     * Joda formatters, in a holder so they are only created by the methods using them.
+     */
+    private static final class IsoFormatters {
+        static final DateTimeFormatter DATE_TIME_FORMATTER_UTC
+                = ISODateTimeFormat.dateTime().withZoneUTC();
+
+        static final DateTimeFormatter TVDB_DATE_FORMATTER = ISODateTimeFormat.date();
+    }
+
+    /**
+     * Release times formatted by {@link #formatToLocalDayAndTime} kept per thread, until the day
+     * changes or this many are cached.
+     */
+    private static final int MAX_CACHED_RELEASE_TIMES = 256;
+
+    /**
+     * Bumped whenever the locale, time zone or time format of the device changes.
+     */
+    private static final AtomicInteger FORMATTER_GENERATION = new AtomicInteger();
+
+    /**
+     * {@link SimpleDateFormat} is not thread safe, so every thread gets its own formatters.
+     */
+    private static final ThreadLocal<Formatters> FORMATTERS = new ThreadLocal<Formatters>() {
+        @Override
+        protected Formatters initialValue() {
+            return new Formatters();
+        }
+    };
 
-    private static final DateTimeFormatter TVDB_DATE_FORMATTER = ISODateTimeFormat.date();
+    /**
+     * Formatters capture the default locale and time zone when they are created, so they are
+     * cached until {@link #invalidateFormatters()}.
+     */
+    private static final class Formatters {
+        int generation = -1;
+        java.text.DateFormat localDay;
+        java.text.DateFormat localTime;
+        java.text.DateFormat localDate;
+        java.text.DateFormat year;
+
+        /**
+         * Formatted release times, valid from the start of the day they were cached on until
+         * {@link #todayEndMillis}.
+         */
+        LongSparseArray<String> releaseTimes;
+        long todayStartMillis;
+        long todayEndMillis;
+    }
+
+    private static Formatters getFormatters() {
+        Formatters formatters = FORMATTERS.get();
+        int generation = FORMATTER_GENERATION.get();
+        if (formatters.generation != generation) {
+            formatters.generation = generation;
+            formatters.localDay = null;
+            formatters.localTime = null;
+            formatters.localDate = null;
+            formatters.year = null;
+            formatters.releaseTimes = null;
+        }
+        return formatters;
+    }
+
+    /**
+     * Drops all cached formatters, they are created again with the current locale and time zone
+     * on next use.
+     */
+    public static void invalidateFormatters() {
+        FORMATTER_GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Registers a receiver which calls {@link #invalidateFormatters()} when the locale, the time
+     * zone, the clock or the 12/24 hour setting of the device changes.
+     */
+    public static void registerFormatterInvalidation(@NonNull Context context) {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidateFormatters();
+            }
+        }, filter);
+    }
 
     /**
      * Returns the appropriate time zone for the given tzdata zone identifier.
@@ -133,7 +224,7 @@ public class TimeTools {
      * Parses a {@link DateTime} to its ISO datetime string representation (in UTC).
      */
     public static String parseShowFirstRelease(@Nullable DateTime dateTime) {
-        return dateTime == null ? "" : DATE_TIME_FORMATTER_UTC.print(dateTime);
+        return dateTime == null ? "" : IsoFormatters.DATE_TIME_FORMATTER_UTC.print(dateTime);
     }
 
 
@@ -232,18 +323,22 @@ public class TimeTools {
         DateTime dateTime;
 
         try {
-            dateTime = DATE_TIME_FORMATTER_UTC.parseDateTime(releaseDateTime);
+            dateTime = IsoFormatters.DATE_TIME_FORMATTER_UTC.parseDateTime(releaseDateTime);
         } catch (IllegalArgumentException ignored) {
             // legacy format, or otherwise invalid
             try {
                 // try legacy date only parser
-                dateTime = TVDB_DATE_FORMATTER.parseDateTime(releaseDateTime);
+                dateTime = IsoFormatters.TVDB_DATE_FORMATTER.parseDateTime(releaseDateTime);
             } catch (IllegalArgumentException e) {
                 return null;
             }
         }
 
-        return new SimpleDateFormat("yyyy", Locale.getDefault()).format(dateTime.toDate());
+        Formatters formatters = getFormatters();
+        if (formatters.year == null) {
+            formatters.year = new SimpleDateFormat("yyyy", Locale.getDefault());
+        }
+        return formatters.year.format(dateTime.toDate());
     }
 
     private static DateTime applyUnitedStatesCorrections(@Nullable String country,
@@ -306,8 +401,11 @@ public class TimeTools {
      * Formats to the week day abbreviation (e.g. "Mon") as defined by the devices locale.
      */
     public static String formatToLocalDay(Date dateTime) {
-        SimpleDateFormat localDayFormat = new SimpleDateFormat("E", Locale.getDefault());
-        return localDayFormat.format(dateTime);
+        Formatters formatters = getFormatters();
+        if (formatters.localDay == null) {
+            formatters.localDay = new SimpleDateFormat("E", Locale.getDefault());
+        }
+        return formatters.localDay.format(dateTime);
     }
 
     /**
@@ -325,8 +423,50 @@ public class TimeTools {
      * Formats to absolute time format (e.g. "08:00 PM") as defined by the devices locale.
      */
     public static String formatToLocalTime(Context context, Date dateTime) {
-        java.text.DateFormat localTimeFormat = DateFormat.getTimeFormat(context);
-        return localTimeFormat.format(dateTime);
+        Formatters formatters = getFormatters();
+        if (formatters.localTime == null) {
+            formatters.localTime = DateFormat.getTimeFormat(context);
+        }
+        return formatters.localTime.format(dateTime);
+    }
+
+    /**
+     * Formats a release time for bylines: the time (e.g. "08:00 PM") if it is today, otherwise
+     * prefixed with the week day abbreviation (e.g. "Mon 08:00 PM"), as defined by the devices
+     * locale.
+     *
+     * <p> Every queue refill formats the release times of the picked candidates again, so they
+     * are cached for the rest of the day.
+     */
+    public static String formatToLocalDayAndTime(Context context, long releaseTime) {
+        Formatters formatters = getFormatters();
+        long now = System.currentTimeMillis();
+        if (formatters.releaseTimes == null || now < formatters.todayStartMillis
+                || now >= formatters.todayEndMillis
+                || formatters.releaseTimes.size() >= MAX_CACHED_RELEASE_TIMES) {
+            Calendar today = Calendar.getInstance();
+            today.setTimeInMillis(now);
+            today.set(Calendar.HOUR_OF_DAY, 0);
+            today.set(Calendar.MINUTE, 0);
+            today.set(Calendar.SECOND, 0);
+            today.set(Calendar.MILLISECOND, 0);
+            formatters.todayStartMillis = today.getTimeInMillis();
+            today.add(Calendar.DAY_OF_MONTH, 1);
+            formatters.todayEndMillis = today.getTimeInMillis();
+            formatters.releaseTimes = new LongSparseArray<>();
+        }
+
+        String formatted = formatters.releaseTimes.get(releaseTime);
+        if (formatted == null) {
+            Date date = new Date(releaseTime);
+            formatted = formatToLocalTime(context, date);
+            if (releaseTime < formatters.todayStartMillis
+                    || releaseTime >= formatters.todayEndMillis) {
+                formatted = formatToLocalDay(date) + " " + formatted;
+            }
+            formatters.releaseTimes.put(releaseTime, formatted);
+        }
+        return formatted;
     }
 
     /**
@@ -385,7 +525,11 @@ public class TimeTools {
         StringBuilder date = new StringBuilder();
 
         // date, e.g. "2014/05/31"
-        date.append(DateFormat.getDateFormat(context).format(dateTime));
+        Formatters formatters = getFormatters();
+        if (formatters.localDate == null) {
+            formatters.localDate = DateFormat.getDateFormat(context);
+        }
+        date.append(formatters.localDate.format(dateTime));
         date.append(" ");
 
         // device time zone, e.g. "CEST"